@@ -842,6 +842,8 @@ public class Cli {
                 return ANSI_RED + "PERMISSIONS ERROR:" + ANSI_RESET;
             case 7:
                 return ANSI_RED + "CARD ERROR:" + ANSI_RESET;
+            case 8:
+                return ANSI_RED + "STORAGE ERROR:" + ANSI_RESET;
         }
 
         return null;
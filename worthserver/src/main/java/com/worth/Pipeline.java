@@ -0,0 +1,123 @@
+package com.worth;
+
+import com.worth.protocol.Request;
+import com.worth.protocol.Response;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Pipeline executes the tagged requests of a session without waiting for the
+ * previous responses. Requests on the same project are executed in order of arrival,
+ * requests on different projects concurrently, requests not related to a
+ * project (login, logout, list projects...) wait for all the previous ones
+ * and are waited by all the next ones.
+ * Submissions have to be made by a single thread, the connection's reader
+ */
+public class Pipeline {
+    private final Session session;
+    private final Executor executor;
+    private final Runnable onFailure;
+
+    // last submitted request for each project
+    private final ConcurrentHashMap<String, CompletableFuture<Void>> tails;
+
+    // last submitted request not related to a project
+    private CompletableFuture<Void> barrier;
+
+    /**
+     * Creates the pipeline of given session
+     *
+     * @param session the session executing the requests
+     * @param executor the executor running the requests
+     * @param onFailure executed if a response can't be created, should close the connection
+     */
+    public Pipeline(Session session, Executor executor, Runnable onFailure) {
+        this.session = session;
+        this.executor = executor;
+        this.onFailure = onFailure;
+        this.tails = new ConcurrentHashMap<>();
+        this.barrier = CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Schedules the execution of given request
+     *
+     * @param request the tagged request
+     * @param reply consumes the tagged response, called by the executor's threads
+     */
+    public void submit(Request request, Consumer<Response> reply) {
+        String project = projectOf(request);
+        CompletableFuture<Void> after;
+
+        if (project == null) {
+            after = this.drained();
+        } else {
+            CompletableFuture<Void> tail = this.tails.get(project);
+            after = tail == null ? this.barrier : CompletableFuture.allOf(this.barrier, tail);
+        }
+
+        CompletableFuture<Void> f = after.thenRunAsync(() -> {
+            Response response;
+
+            try {
+                response = this.session.process(request);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                this.onFailure.run();
+                return;
+            }
+
+            reply.accept(response.withId(request.getId()));
+        }, this.executor);
+
+        if (project == null) {
+            this.barrier = f;
+            this.tails.clear();
+        } else {
+            this.tails.put(project, f);
+
+            // forgetting the project once idle
+            f.whenComplete((v, e) -> this.tails.remove(project, f));
+        }
+    }
+
+    /**
+     * Returns a future completed when all the submitted requests are executed
+     *
+     * @return a future completed when all the submitted requests are executed
+     */
+    public CompletableFuture<Void> drained() {
+        List<CompletableFuture<Void>> pending = new ArrayList<>(this.tails.values());
+        pending.add(this.barrier);
+
+        return CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0]));
+    }
+
+    // returns the project the request operates on, null if not related to a project
+    private static String projectOf(Request request) {
+
+        switch (request.getOpcode()) {
+            case 3: // CREATE-PROJECT
+            case 4: // ADD-MEMBER
+            case 5: // SHOW-MEMBERS
+            case 6: // SHOW-CARDS
+            case 7: // SHOW-CARD
+            case 8: // ADD-CARD
+            case 9: // MOVE-CARD
+            case 10: // GET-CARD-HISTORY
+            case 11: // CANCEL-PROJECT
+            case 12: // BATCH
+            case 14: // PROJECT-METRICS
+            case 15: // SYNC
+                return request.size() > 0 ? request.field(0) : null;
+
+            default:
+                return null;
+        }
+    }
+}
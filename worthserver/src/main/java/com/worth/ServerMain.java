@@ -1,33 +1,78 @@
 package com.worth;
 
-import com.worth.components.Project;
+import com.worth.chat.ChatIpAllocator;
 import com.worth.components.User;
+import com.worth.io.FilePersistence;
+import com.worth.io.Journal;
+import com.worth.io.Persistence;
 import com.worth.io.Reader;
+import com.worth.io.WriteBehindPersistence;
 import com.worth.io.Writer;
 import com.worth.managers.ProjectsManager;
 import com.worth.managers.UsersManager;
+import com.worth.nio.SelectorServer;
 import com.worth.rmi.callback.CallbackServer;
 import com.worth.rmi.callback.CallbackServerInterface;
 import com.worth.rmi.registration.Registration;
 import com.worth.rmi.registration.RegistrationService;
 
 import java.io.IOException;
+import java.lang.reflect.Method;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
 import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class ServerMain {
 
     public static final int servicePort = 6660;
     public static final int registryPort = 6661;
-
+    public static final long defaultMetricsSeconds = 60;
+
+    /**
+     * Starts the server, the first argument optionally selects how clients are served:
+     * "threads" (default) serves each client with a dedicated thread,
+     * "virtual" serves each client with a dedicated virtual thread (java 21 or later),
+     * "nio" serves all clients with a fixed number of selector based event loops.
+     * The second argument optionally selects how projects are saved:
+     * "files" (default) saves each card in its own file, "journal" appends
+     * each change to a journal replayed at startup, "writebehind" saves the files as "files"
+     * but asynchronously, writing the latest state of the changed cards every
+     * worth.writebehind.interval milliseconds (default 1000). The journal's group commit is tuned by the
+     * system properties worth.journal.window, microseconds waited for more changes to force
+     * together (default 0), and worth.journal.batch, maximum changes forced together (default 1024).
+     * A snapshot of the projects compacting the journal is taken every worth.journal.snapshot
+     * seconds (default 600, 0 disables it).
+     * The server's metrics are logged every worth.metrics.interval seconds (default 60,
+     * 0 disables it) and on exit
+     *
+     * @param args the command line arguments
+     * @throws IOException if the server can't listen for connections
+     */
     public static void main(String[] args) throws IOException {
 
+        String mode = args.length > 0 ? args[0] : "threads";
+
+        if (!mode.equals("threads") && !mode.equals("virtual") && !mode.equals("nio")) {
+            System.out.println("[ERROR]: Unknown mode " + mode + ", available modes are threads, virtual and nio");
+            return;
+        }
+
+        String storage = args.length > 1 ? args[1] : "files";
+
+        if (!storage.equals("files") && !storage.equals("journal") && !storage.equals("writebehind")) {
+            System.out.println("[ERROR]: Unknown storage " + storage + ", available storages are files, journal and writebehind");
+            return;
+        }
+
         // creating DB
         Writer.createDB();
 
@@ -48,8 +93,59 @@ public class ServerMain {
 
 
         // creating projects manager
-        List<Project> projects = Reader.restoreProjects();
-        ProjectsManager pm = new ProjectsManager(projects, cs);
+        Persistence persistence;
+
+        if (storage.equals("journal")) {
+            persistence = new Journal(Journal.defaultPath,
+                    Long.getLong("worth.journal.window", Journal.defaultWindowMicros),
+                    Integer.getInteger("worth.journal.batch", Journal.defaultMaxBatch));
+        } else if (storage.equals("writebehind")) {
+            persistence = new WriteBehindPersistence(
+                    Long.getLong("worth.writebehind.interval", WriteBehindPersistence.defaultIntervalMillis));
+        } else {
+            persistence = new FilePersistence();
+        }
+
+        // the projects are restored straight into the manager, in parallel
+        ProjectsManager pm = new ProjectsManager(new ArrayList<>(), cs, new ChatIpAllocator(), persistence);
+        persistence.restoreProjects(pm::restore);
+
+        // executing the pending filesystem updates on exit, flushing the write behind ones
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            pm.close();
+            logMetrics(pm);
+        }));
+
+        long metricsSeconds = Long.getLong("worth.metrics.interval", defaultMetricsSeconds);
+
+        if (metricsSeconds > 0) {
+            ScheduledExecutorService metrics = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "metrics-logger");
+                t.setDaemon(true);
+                return t;
+            });
+
+            metrics.scheduleWithFixedDelay(() -> logMetrics(pm), metricsSeconds, metricsSeconds, TimeUnit.SECONDS);
+        }
+
+        long snapshotSeconds = Long.getLong("worth.journal.snapshot", Journal.defaultSnapshotSeconds);
+
+        if (storage.equals("journal") && snapshotSeconds > 0) {
+            ScheduledExecutorService snapshots = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "journal-snapshot");
+                t.setDaemon(true);
+                return t;
+            });
+
+            snapshots.scheduleWithFixedDelay(() -> {
+                try {
+                    pm.snapshot();
+                } catch (IOException e) {
+                    System.out.println("[ERROR]: Can't take the projects' snapshot");
+                    e.printStackTrace();
+                }
+            }, snapshotSeconds, snapshotSeconds, TimeUnit.SECONDS);
+        }
 
 
         // creating registration server
@@ -59,16 +155,64 @@ public class ServerMain {
         reg.rebind("REGISTRATION-SERVICE", stubRegistration);
 
 
+        if (mode.equals("nio")) {
+            int cores = Runtime.getRuntime().availableProcessors();
+            SelectorServer server = new SelectorServer(pm, um, servicePort, cores, cores * 2);
+
+            System.out.println("[INFO]: Listening for incoming connections...");
+            server.run();
+            return;
+        }
+
         ServerSocket ssock = new ServerSocket(servicePort);
 
-        ExecutorService threadPool = Executors.newCachedThreadPool();
+        ExecutorService threadPool = newSessionsExecutor(mode);
 
         System.out.println("[INFO]: Listening for incoming connections...");
         // dispatching new incoming connections
         while (true) {
             Socket sock = ssock.accept();
-            threadPool.execute(new ServerThread(pm, um, sock));
+            // pipelined requests run on the sessions' executor, with the same kind of threads
+            threadPool.execute(new ServerThread(pm, um, sock, threadPool));
+        }
+    }
+
+    /**
+     * Logs the metrics of given projects manager
+     *
+     * @param pm the projects manager
+     */
+    public static void logMetrics(ProjectsManager pm) {
+        System.out.println("[INFO]: Chat metrics " + pm.chatMetrics());
+
+        Map<String, Number> storage = pm.storageMetrics();
+
+        if (!storage.isEmpty()) {
+            System.out.println("[INFO]: Storage metrics " + storage);
         }
     }
 
+    /**
+     * Returns the executor running the ServerThread sessions for given mode,
+     * a virtual thread per task executor for "virtual" if supported by the running
+     * jvm, a cached thread pool otherwise
+     *
+     * @param mode the server mode
+     * @return the executor running the sessions
+     */
+    public static ExecutorService newSessionsExecutor(String mode) {
+
+        if (mode.equals("virtual")) {
+            // looked up reflectively, the server is compiled for java 11
+            try {
+                Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService) factory.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                System.out.println("[WARN]: Virtual threads not supported by this jvm, using platform threads");
+            }
+        }
+
+        return Executors.newCachedThreadPool();
+    }
+
 }
@@ -1,49 +1,43 @@
 package com.worth;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.worth.components.Card;
-import com.worth.components.CardState;
-import com.worth.components.Project;
-import com.worth.exceptions.OperationNotAllowedException;
-import com.worth.exceptions.WrongPasswordException;
-import com.worth.exceptions.card.CardAlreadyExistsException;
-import com.worth.exceptions.card.CardNotFoundException;
-import com.worth.exceptions.card.IllegalCardMovementException;
-import com.worth.exceptions.card.InvalidCardStateException;
-import com.worth.exceptions.project.ProjectAlreadyExistsException;
-import com.worth.exceptions.project.ProjectNotFoundException;
-import com.worth.exceptions.user.UserAlreadyLoggedInException;
+import com.worth.exceptions.ProtocolException;
 import com.worth.exceptions.user.UserAlreadyLoggedOutException;
-import com.worth.exceptions.user.UserAlreadyMemberException;
 import com.worth.exceptions.user.UserNotFoundException;
 import com.worth.managers.ProjectsManager;
 import com.worth.managers.UsersManager;
+import com.worth.protocol.BinaryCodec;
+import com.worth.protocol.Request;
+import com.worth.protocol.Response;
+import com.worth.protocol.TextCodec;
+import com.worth.protocol.TextParser;
 
 import java.io.*;
 import java.net.Socket;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class ServerThread implements Runnable {
-    private final ProjectsManager projects;
-    private final UsersManager users;
-
-    // if null the user is not logged in
-    // if not null the user is logged in
-    // and the value is the user's username
-    private String userName;
-
+    private final Session session;
+    private final Pipeline pipeline;
     private final Socket socket;
 
-
-    public ServerThread(ProjectsManager projects, UsersManager users, Socket socket) {
-        this.projects = projects;
-        this.users = users;
+    // serializes responses written by the pipeline's workers and by the reader
+    private final ReentrantLock writeLock;
+
+
+    /**
+     * Creates the thread serving a client connection
+     *
+     * @param projects the projects manager
+     * @param users the users manager
+     * @param socket the client's socket
+     * @param workers the executor running the pipelined requests, the one serving the sessions
+     */
+    public ServerThread(ProjectsManager projects, UsersManager users, Socket socket, Executor workers) {
+        this.session = new Session(projects, users);
+        this.pipeline = new Pipeline(this.session, workers, this::closeSocket);
         this.socket = socket;
-        this.userName = null;
+        this.writeLock = new ReentrantLock();
     }
 
     @Override
@@ -52,36 +46,62 @@ public class ServerThread implements Runnable {
         System.out.println("[INFO]: Connected to " + this.socket.getInetAddress() + ":" + this.socket.getPort());
 
         try (
-                BufferedReader inFromClient = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-                PrintWriter outToClient = new PrintWriter(socket.getOutputStream())
+                InputStream in = new BufferedInputStream(socket.getInputStream());
+                OutputStream out = new BufferedOutputStream(socket.getOutputStream())
         ){
 
-            String command;
+            // the first byte tells which protocol the client speaks
+            in.mark(1);
+            boolean binary = in.read() == BinaryCodec.MAGIC;
+            in.reset();
+
+            if (binary && !this.handshake(in, out)) {
+                System.out.println("[WARN]: Client " + this.socket.getInetAddress() + ":" + this.socket.getPort() + " speaks an unsupported protocol version");
+                this.socket.close();
+                return;
+            }
+
+            TextParser parser = new TextParser();
+
+            Request request;
 
             while(true) {
 
-                command = inFromClient.readLine();
+                try {
+                    if (binary) {
+                        request = BinaryCodec.read(in);
+                    } else {
+                        request = parser.read(in) ? parser.toRequest() : null;
+                    }
+                } catch (ProtocolException e) {
+                    System.out.println("[WARN]: Client " + this.socket.getInetAddress() + ":" + this.socket.getPort() + " sent a malformed request: " + e.getMessage());
+                    request = null;
+                }
+
+                if (request != null && request.isTagged()) {
+                    this.pipeline.submit(request, response -> this.write(response, binary, out));
+                    continue;
+                }
+
+                // untagged requests are executed after the pipelined ones
+                this.pipeline.drained().join();
 
                 // client crashed
-                if (command == null) {
+                if (request == null) {
                     System.out.println("[WARN]: Client " + this.socket.getInetAddress() + ":" + this.socket.getPort() + " crashed");
 
                     // closing safely
-                    if (userName != null) {
-                        this.users.logout(userName);
-                    }
+                    this.session.close();
 
                     break;
                 }
 
                 // client quit
-                if (command.equals("quit")) {
+                if (request.getOpcode() == Request.QUIT) {
                     break;
                 }
 
-                String response = processRequest(command);
-                outToClient.println(response);
-                outToClient.flush();
+                this.write(this.session.process(request), binary, out);
             }
 
             this.socket.close();
@@ -93,223 +113,45 @@ public class ServerThread implements Runnable {
         }
     }
 
-    private String processRequest(String command) throws JsonProcessingException {
-        String[] splittedCommand = command.split("%");
-        int op = Integer.parseInt(splittedCommand[0]);
-
-        switch (op) {
-
-            case 0: // LOGIN
-
-                try {
-                    this.users.login(
-                            splittedCommand[1], // user's username
-                            splittedCommand[2]); // user's password
-                } catch (UserAlreadyLoggedInException e) {
-                    return "4%" + e.getMessage();
-                } catch (UserNotFoundException e) {
-                    return "2%" + e.getMessage();
-                } catch (WrongPasswordException e) {
-                    return "3%" + e.getMessage();
-                }
-
-                this.userName = splittedCommand[1];
-
-                // creating relations (project's name, project's ip) to send to the client
-                HashMap<String, String> projectsChatIPs = new HashMap<>();
-
-                // listing projects chat ip
-                for (Project p : projects.listProjectsOf(this.userName)) {
-                    projectsChatIPs.put(p.getName(), p.getChatIp());
-                }
-
-                // creating relations (user's name, status) to send to the client
-                Map<String, Boolean> usersList = users.getUsersList();
-
-                return "0%Logged in successfully%" +
-                        new ObjectMapper().writeValueAsString(projectsChatIPs) + "%" +
-                        new ObjectMapper().writeValueAsString(usersList);
-
-            case 1: // LOGOUT
-
-                try {
-                    this.users.logout(
-                            splittedCommand[1]); // user's username
-                    this.userName = null;
-                } catch (UserNotFoundException e) {
-                    // not possible, client saves the correct user's username
-                } catch (UserAlreadyLoggedOutException e) {
-                    // not possible, check made by client
-                }
-
-                return "0%Logged out successfully";
-
-            case 2: // LIST-PROJECTS
-
-                List<Project> projectsList = projects.listProjectsOf(this.userName);
-                ArrayList<String> projectsName = new ArrayList<>();
-
-                for (Project p : projectsList) {
-                    projectsName.add(p.getName());
-                }
-
-                return "0%" + new ObjectMapper().writeValueAsString(projectsName);
-
-            case 3: // CREATE-PROJECT
-
-                try {
-                    this.projects.createProject(
-                            splittedCommand[1], // project's name
-                            this.userName);
-                } catch (ProjectAlreadyExistsException e) {
-                    return "5%" + e.getMessage();
-                }
-
-                return "0%Project successfully created";
-
-            case 4: // ADD-MEMBER
-
-                if (!this.users.exists(splittedCommand[2])) {
-                    return "2%User " + splittedCommand[2] + " doesn't exist";
-                }
-
-                try {
-                    this.projects.addMember(
-                            splittedCommand[1], // project's name
-                            splittedCommand[2], // new member's name
-                            this.userName);
-                } catch (ProjectNotFoundException e) {
-                    return "5%" + e.getMessage();
-                } catch (OperationNotAllowedException e) {
-                    return "6%" + e.getMessage();
-                } catch (UserAlreadyMemberException e) {
-                    return "2%" + e.getMessage();
-                }
+    // writes a response, responses to pipelined requests are written by the pipeline's workers
+    private void write(Response response, boolean binary, OutputStream out) {
 
-                return "0%User successfully added";
+        this.writeLock.lock();
 
-            case 5: // SHOW-MEMBERS
-
-                List<String> membersList;
-
-                try {
-                    membersList = this.projects.showMembers(
-                            splittedCommand[1], // project's name
-                            this.userName);
-                } catch (ProjectNotFoundException e) {
-                    return "5%" + e.getMessage();
-                } catch (OperationNotAllowedException e) {
-                    return "6%" + e.getMessage();
-                }
-
-                return "0%" + new ObjectMapper().writeValueAsString(membersList);
-
-            case 6: // SHOW-CARDS
-
-                List<String> cardsList;
-
-                try {
-                    cardsList = this.projects.showCards(
-                            splittedCommand[1], // project's name
-                            this.userName);
-                } catch (ProjectNotFoundException e) {
-                    return "5%" + e.getMessage();
-                } catch (OperationNotAllowedException e) {
-                    return "6%" + e.getMessage();
-                }
-
-                return "0%" + new ObjectMapper().writeValueAsString(cardsList);
-
-            case 7: // SHOW-CARD
-
-                Card card;
-
-                try {
-                    card = this.projects.showCard(
-                            splittedCommand[1], // project's name
-                            splittedCommand[2], // card's name
-                            this.userName);
-                } catch (ProjectNotFoundException e) {
-                    return "5%" + e.getMessage();
-                } catch (OperationNotAllowedException e) {
-                    return "6%" + e.getMessage();
-                } catch (CardNotFoundException e) {
-                    return "7%" + e.getMessage();
-                }
-
-                return "0%" + card.getName() + "%" + card.getDescription() + "%" + card.getState();
-
-            case 8: // ADD-CARD
-
-                try {
-                    this.projects.addCard(
-                            splittedCommand[1], // project's name
-                            splittedCommand[2], // card's name
-                            splittedCommand[3], // card's description
-                            this.userName);
-                } catch (ProjectNotFoundException e) {
-                    return "5%" + e.getMessage();
-                } catch (OperationNotAllowedException e) {
-                    return "6%" + e.getMessage();
-                } catch (CardAlreadyExistsException e) {
-                    return "7%" + e.getMessage();
-                }
-
-                return "0%Card successfully added";
-
-            case 9: // MOVE-CARD
-
-                try {
-                    this.projects.moveCard(
-                            splittedCommand[1], // project's name
-                            splittedCommand[2], // card's name
-                            CardState.fromString(splittedCommand[3]), // to list
-                            this.userName);
-                } catch (ProjectNotFoundException e) {
-                    return "5%" + e.getMessage();
-                } catch (OperationNotAllowedException e) {
-                    return "6%" + e.getMessage();
-                } catch (CardNotFoundException | IllegalCardMovementException | InvalidCardStateException e) {
-                    return "7%" + e.getMessage();
-                }
-
-                return "0%Card successfully moved";
-
-            case 10: // GET-CARD-HISTORY
-
-                List<CardState> history;
-
-                try {
-                    history = this.projects.getCardHistory(
-                            splittedCommand[1], // project's name
-                            splittedCommand[2], // card's name
-                            this.userName);
-                } catch (ProjectNotFoundException e) {
-                    return "5%" + e.getMessage();
-                } catch (OperationNotAllowedException e) {
-                    return "6%" + e.getMessage();
-                }
-
-                if (history == null) {
-                    return "7%Card " + splittedCommand[2] + " doesn't exist in project " + splittedCommand[1];
-                }
+        try {
+            if (binary) {
+                BinaryCodec.write(out, response);
+            } else {
+                TextCodec.write(out, response);
+            }
+        } catch (IOException e) {
+            // client crashed, the reader will notice it
+            this.closeSocket();
+        } finally {
+            this.writeLock.unlock();
+        }
+    }
 
-                return "0%" + new ObjectMapper().writeValueAsString(history);
+    private void closeSocket() {
+        try {
+            this.socket.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
 
-            case 11: // CANCEL-PROJECT
+    // reads the binary protocol's magic and version, acknowledging them if supported
+    private boolean handshake(InputStream in, OutputStream out) throws IOException {
+        in.read(); // magic
 
-                try {
-                    this.projects.cancelProject(splittedCommand[1], this.userName);
-                } catch (ProjectNotFoundException e) {
-                    return "5%" + e.getMessage();
-                } catch (OperationNotAllowedException e) {
-                    return "6%" + e.getMessage();
-                }
+        if (in.read() != BinaryCodec.VERSION) {
+            return false;
+        }
 
-                return "0%project successfully deleted";
+        out.write(BinaryCodec.MAGIC);
+        out.write(BinaryCodec.VERSION);
+        out.flush();
 
-            default:
-                return "1%Unknown operation";
-        }
+        return true;
     }
 }
@@ -0,0 +1,417 @@
+package com.worth;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.worth.components.Card;
+import com.worth.components.CardState;
+import com.worth.components.FlowStats;
+import com.worth.components.Project;
+import com.worth.exceptions.OperationNotAllowedException;
+import com.worth.exceptions.StorageException;
+import com.worth.exceptions.WrongPasswordException;
+import com.worth.exceptions.card.CardAlreadyExistsException;
+import com.worth.exceptions.card.CardNotFoundException;
+import com.worth.exceptions.card.CardVersionMismatchException;
+import com.worth.exceptions.card.IllegalCardMovementException;
+import com.worth.exceptions.card.InvalidCardStateException;
+import com.worth.exceptions.project.ChatIpExhaustedException;
+import com.worth.exceptions.project.ProjectAlreadyExistsException;
+import com.worth.exceptions.project.ProjectNotFoundException;
+import com.worth.exceptions.user.UserAlreadyLoggedInException;
+import com.worth.exceptions.user.UserAlreadyLoggedOutException;
+import com.worth.exceptions.user.UserAlreadyMemberException;
+import com.worth.exceptions.user.UserNotFoundException;
+import com.worth.managers.BatchOperation;
+import com.worth.managers.ProjectsManager;
+import com.worth.managers.UsersManager;
+import com.worth.protocol.JsonField;
+import com.worth.protocol.Request;
+import com.worth.protocol.Response;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Session holds the state of a single client connection and executes
+ * its requests, independently from the way the connection is served
+ */
+public class Session {
+    private static final ObjectReader batchReader = new ObjectMapper().readerFor(BatchOperation[].class);
+
+    private final ProjectsManager projects;
+    private final UsersManager users;
+
+    // if null the user is not logged in
+    // if not null the user is logged in
+    // and the value is the user's username
+    // volatile because pipelined requests run on different threads
+    private volatile String userName;
+
+
+    public Session(ProjectsManager projects, UsersManager users) {
+        this.projects = projects;
+        this.users = users;
+        this.userName = null;
+    }
+
+    /**
+     * Logs out the session's user if still logged in,
+     * used when the client crashes without logging out
+     *
+     * @throws UserAlreadyLoggedOutException if user is already offline
+     * @throws UserNotFoundException if user doesn't exist
+     */
+    public void close() throws UserAlreadyLoggedOutException, UserNotFoundException {
+        if (this.userName != null) {
+            this.users.logout(this.userName);
+            this.userName = null;
+        }
+    }
+
+    /**
+     * Executes given request on behalf of the session's user
+     *
+     * @param request the request received from the client
+     * @return the response to send back to the client
+     */
+    public Response process(Request request) {
+
+        switch (request.getOpcode()) {
+
+            case 0: // LOGIN
+
+                try {
+                    this.users.login(
+                            request.field(0), // user's username
+                            request.field(1)); // user's password
+                } catch (UserAlreadyLoggedInException e) {
+                    return new Response(4, e.getMessage());
+                } catch (UserNotFoundException e) {
+                    return new Response(2, e.getMessage());
+                } catch (WrongPasswordException e) {
+                    return new Response(3, e.getMessage());
+                }
+
+                this.userName = request.field(0);
+
+                // creating relations (project's name, project's ip) to send to the client
+                HashMap<String, String> projectsChatIPs = new HashMap<>();
+
+                // listing projects chat ip
+                for (Project p : projects.listProjectsOf(this.userName)) {
+                    projectsChatIPs.put(p.getName(), p.getChatIp());
+                }
+
+                // creating relations (user's name, status) to send to the client
+                Map<String, Boolean> usersList = users.getUsersList();
+
+                return new Response(0, "Logged in successfully",
+                        JsonField.of(JsonField.STRING_MAP, projectsChatIPs),
+                        JsonField.of(JsonField.BOOLEAN_MAP, usersList));
+
+            case 1: // LOGOUT
+
+                try {
+                    this.users.logout(
+                            request.field(0)); // user's username
+                    this.userName = null;
+                } catch (UserNotFoundException e) {
+                    // not possible, client saves the correct user's username
+                } catch (UserAlreadyLoggedOutException e) {
+                    // not possible, check made by client
+                }
+
+                return new Response(0, "Logged out successfully");
+
+            case 2: // LIST-PROJECTS
+
+                List<Project> projectsList = projects.listProjectsOf(this.userName);
+                ArrayList<String> projectsName = new ArrayList<>();
+
+                for (Project p : projectsList) {
+                    projectsName.add(p.getName());
+                }
+
+                return new Response(0, JsonField.of(JsonField.STRING_LIST, projectsName));
+
+            case 3: // CREATE-PROJECT
+
+                try {
+                    this.projects.createProject(
+                            request.field(0), // project's name
+                            this.userName);
+                } catch (ProjectAlreadyExistsException | ChatIpExhaustedException e) {
+                    return new Response(5, e.getMessage());
+                } catch (StorageException e) {
+                    return new Response(8, e.getMessage());
+                }
+
+                return new Response(0, "Project successfully created");
+
+            case 4: // ADD-MEMBER
+
+                if (!this.users.exists(request.field(1))) {
+                    return new Response(2, "User " + request.field(1) + " doesn't exist");
+                }
+
+                try {
+                    this.projects.addMember(
+                            request.field(0), // project's name
+                            request.field(1), // new member's name
+                            this.userName);
+                } catch (ProjectNotFoundException e) {
+                    return new Response(5, e.getMessage());
+                } catch (OperationNotAllowedException e) {
+                    return new Response(6, e.getMessage());
+                } catch (UserAlreadyMemberException e) {
+                    return new Response(2, e.getMessage());
+                } catch (StorageException e) {
+                    return new Response(8, e.getMessage());
+                }
+
+                return new Response(0, "User successfully added");
+
+            case 5: // SHOW-MEMBERS
+
+                List<String> membersList;
+
+                try {
+                    membersList = this.projects.showMembers(
+                            request.field(0), // project's name
+                            this.userName);
+                } catch (ProjectNotFoundException e) {
+                    return new Response(5, e.getMessage());
+                } catch (OperationNotAllowedException e) {
+                    return new Response(6, e.getMessage());
+                }
+
+                return new Response(0, JsonField.of(JsonField.STRING_LIST, membersList));
+
+            case 6: // SHOW-CARDS
+
+                List<String> cardsList;
+
+                try {
+                    cardsList = this.projects.showCards(
+                            request.field(0), // project's name
+                            this.userName);
+                } catch (ProjectNotFoundException e) {
+                    return new Response(5, e.getMessage());
+                } catch (OperationNotAllowedException e) {
+                    return new Response(6, e.getMessage());
+                }
+
+                return new Response(0, JsonField.of(JsonField.STRING_LIST, cardsList));
+
+            case 7: // SHOW-CARD
+
+                Card card;
+
+                try {
+                    card = this.projects.showCard(
+                            request.field(0), // project's name
+                            request.field(1), // card's name
+                            this.userName);
+                } catch (ProjectNotFoundException e) {
+                    return new Response(5, e.getMessage());
+                } catch (OperationNotAllowedException e) {
+                    return new Response(6, e.getMessage());
+                } catch (CardNotFoundException e) {
+                    return new Response(7, e.getMessage());
+                }
+
+                return new Response(0, card.getName(), card.getDescription(), card.getState().toString(),
+                        String.valueOf(card.getVersion()));
+
+            case 8: // ADD-CARD
+
+                try {
+                    this.projects.addCard(
+                            request.field(0), // project's name
+                            request.field(1), // card's name
+                            request.field(2), // card's description
+                            this.userName);
+                } catch (ProjectNotFoundException e) {
+                    return new Response(5, e.getMessage());
+                } catch (OperationNotAllowedException e) {
+                    return new Response(6, e.getMessage());
+                } catch (CardAlreadyExistsException e) {
+                    return new Response(7, e.getMessage());
+                } catch (StorageException e) {
+                    return new Response(8, e.getMessage());
+                }
+
+                return new Response(0, "Card successfully added");
+
+            case 9: // MOVE-CARD
+
+                long expectedVersion = Card.ANY_VERSION;
+
+                if (request.size() > 3) {
+                    try {
+                        expectedVersion = Long.parseLong(request.field(3)); // card's expected version
+                    } catch (NumberFormatException e) {
+                        return new Response(1, "Invalid card version " + request.field(3));
+                    }
+                }
+
+                try {
+                    this.projects.moveCard(
+                            request.field(0), // project's name
+                            request.field(1), // card's name
+                            CardState.fromString(request.field(2)), // to list
+                            this.userName,
+                            expectedVersion);
+                } catch (ProjectNotFoundException e) {
+                    return new Response(5, e.getMessage());
+                } catch (OperationNotAllowedException e) {
+                    return new Response(6, e.getMessage());
+                } catch (CardNotFoundException | IllegalCardMovementException | InvalidCardStateException |
+                        CardVersionMismatchException e) {
+                    return new Response(7, e.getMessage());
+                } catch (StorageException e) {
+                    return new Response(8, e.getMessage());
+                }
+
+                return new Response(0, "Card successfully moved");
+
+            case 10: // GET-CARD-HISTORY
+
+                List<CardState> history;
+
+                try {
+                    history = this.projects.getCardHistory(
+                            request.field(0), // project's name
+                            request.field(1), // card's name
+                            this.userName);
+                } catch (ProjectNotFoundException e) {
+                    return new Response(5, e.getMessage());
+                } catch (OperationNotAllowedException e) {
+                    return new Response(6, e.getMessage());
+                }
+
+                if (history == null) {
+                    return new Response(7, "Card " + request.field(1) + " doesn't exist in project " + request.field(0));
+                }
+
+                return new Response(0, JsonField.of(JsonField.ANY, history));
+
+            case 11: // CANCEL-PROJECT
+
+                try {
+                    this.projects.cancelProject(request.field(0), this.userName);
+                } catch (ProjectNotFoundException e) {
+                    return new Response(5, e.getMessage());
+                } catch (OperationNotAllowedException e) {
+                    return new Response(6, e.getMessage());
+                } catch (StorageException e) {
+                    return new Response(8, e.getMessage());
+                }
+
+                return new Response(0, "project successfully deleted");
+
+            case 12: // BATCH
+
+                List<BatchOperation> operations;
+
+                try {
+                    operations = Arrays.asList(batchReader.<BatchOperation[]>readValue(
+                            request.field(1))); // operations list
+                } catch (JsonProcessingException e) {
+                    return new Response(1, "Malformed operations list");
+                }
+
+                List<Exception> failures;
+
+                try {
+                    failures = this.projects.batch(
+                            request.field(0), // project's name
+                            operations,
+                            this.userName);
+                } catch (ProjectNotFoundException e) {
+                    return new Response(5, e.getMessage());
+                } catch (OperationNotAllowedException e) {
+                    return new Response(6, e.getMessage());
+                } catch (StorageException e) {
+                    return new Response(8, e.getMessage());
+                }
+
+                // creating a result (code, message) for each operation
+                List<Map<String, Object>> results = new ArrayList<>(failures.size());
+
+                for (int i = 0; i < failures.size(); i++) {
+                    Exception e = failures.get(i);
+                    Map<String, Object> result = new LinkedHashMap<>();
+
+                    if (e == null) {
+                        result.put("code", 0);
+                        result.put("message", BatchOperation.ADD_CARD.equals(operations.get(i).getOp()) ?
+                                "Card successfully added" : "Card successfully moved");
+                    } else if (e instanceof UnsupportedOperationException || e instanceof IllegalArgumentException) {
+                        result.put("code", 1);
+                        result.put("message", e.getMessage());
+                    } else {
+                        result.put("code", 7);
+                        result.put("message", e.getMessage());
+                    }
+
+                    results.add(result);
+                }
+
+                return new Response(0, JsonField.of(JsonField.ANY, results));
+
+            case 13: // PROJECT-SUMMARY
+
+                return new Response(0, JsonField.of(JsonField.ANY, this.projects.summary(this.userName)));
+
+            case 14: // PROJECT-METRICS
+
+                Map<String, FlowStats> metrics;
+
+                try {
+                    metrics = this.projects.flowMetrics(
+                            request.field(0), // project's name
+                            this.userName);
+                } catch (ProjectNotFoundException e) {
+                    return new Response(5, e.getMessage());
+                } catch (OperationNotAllowedException e) {
+                    return new Response(6, e.getMessage());
+                }
+
+                return new Response(0, JsonField.of(JsonField.ANY, metrics));
+
+            case 15: // SYNC
+
+                long since;
+
+                try {
+                    since = Long.parseLong(request.field(1)); // last project's version known
+                } catch (NumberFormatException e) {
+                    return new Response(1, "Invalid project version " + request.field(1));
+                }
+
+                Map<String, Object> changes;
+
+                try {
+                    changes = this.projects.sync(
+                            request.field(0), // project's name
+                            since,
+                            this.userName);
+                } catch (ProjectNotFoundException e) {
+                    return new Response(5, e.getMessage());
+                } catch (OperationNotAllowedException e) {
+                    return new Response(6, e.getMessage());
+                }
+
+                return new Response(0, JsonField.of(JsonField.ANY, changes));
+
+            default:
+                return new Response(1, "Unknown operation");
+        }
+    }
+}
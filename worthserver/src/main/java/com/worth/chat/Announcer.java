@@ -0,0 +1,229 @@
+package com.worth.chat;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.MulticastSocket;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Announcer sends the server's messages into the projects' multicast chats.
+ * Messages are queued and sent by a dedicated thread through a single long lived
+ * socket, the address of each chat is resolved once. When coalescing, the messages
+ * queued for the same chat are joined by new lines and sent as a single datagram
+ */
+public class Announcer implements Runnable {
+    // the biggest payload of an IPv4 UDP datagram
+    private static final int maxDatagramSize = 65507;
+
+    // queued by close, stops the sender thread
+    private static final Announcement END = new Announcement(null, null);
+
+    private final int port;
+    private final boolean coalesce;
+    private final ArrayBlockingQueue<Announcement> queue;
+    private final ConcurrentHashMap<String, InetAddress> addresses;
+    private final AtomicLong dropped;
+    private final MulticastSocket socket;
+    private final Thread sender;
+
+    private volatile boolean closed;
+
+    /**
+     * Creates an announcer and starts its thread
+     *
+     * @param port the chats' port
+     * @param capacity the maximum number of queued messages
+     * @param coalesce true to send the messages queued for the same chat in a single datagram
+     */
+    public Announcer(int port, int capacity, boolean coalesce) {
+        this.port = port;
+        this.coalesce = coalesce;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.addresses = new ConcurrentHashMap<>();
+        this.dropped = new AtomicLong();
+
+        MulticastSocket socket = null;
+
+        try {
+            socket = new MulticastSocket();
+        } catch (IOException e) {
+            System.out.println("[ERROR]: Can't open the chats' socket, messages won't be sent");
+            e.printStackTrace();
+        }
+
+        this.socket = socket;
+        this.sender = new Thread(this, "chat-announcer");
+        this.sender.setDaemon(true);
+        this.sender.start();
+    }
+
+    /**
+     * Queues a message for given chat, the message is dropped if the queue is full
+     *
+     * @param chatIp the chat's ip
+     * @param message the message
+     */
+    public void announce(String chatIp, String message) {
+        if (this.closed || !this.queue.offer(new Announcement(chatIp, message))) {
+            this.dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Forgets the resolved address of given chat
+     *
+     * @param chatIp the chat's ip
+     */
+    public void forget(String chatIp) {
+        this.addresses.remove(chatIp);
+    }
+
+    /**
+     * Returns the number of messages dropped because the queue was full
+     *
+     * @return the number of dropped messages
+     */
+    public long getDropped() {
+        return this.dropped.get();
+    }
+
+    /**
+     * Sends the queued messages and stops the announcer
+     */
+    public void close() {
+        if (this.closed) {
+            return;
+        }
+
+        this.closed = true;
+
+        try {
+            this.queue.put(END);
+            this.sender.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (this.socket != null) {
+            this.socket.close();
+        }
+    }
+
+    @Override
+    public void run() {
+        List<Announcement> pending = new ArrayList<>();
+        boolean end = false;
+
+        while (!end) {
+            try {
+                pending.add(this.queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            if (this.coalesce) {
+                this.queue.drainTo(pending);
+            }
+
+            // sending the messages queued before close
+            end = pending.remove(END);
+
+            this.send(pending);
+            pending.clear();
+        }
+    }
+
+    // sends given messages, joining the ones of the same chat if coalescing
+    private void send(List<Announcement> pending) {
+        Map<String, List<byte[]>> chats = new LinkedHashMap<>();
+
+        for (Announcement a : pending) {
+            chats.computeIfAbsent(a.chatIp, ip -> new ArrayList<>()).add(a.message.getBytes(StandardCharsets.UTF_8));
+        }
+
+        for (Map.Entry<String, List<byte[]>> chat : chats.entrySet()) {
+            InetAddress address = this.resolve(chat.getKey());
+
+            if (address == null) {
+                continue;
+            }
+
+            byte[] datagram = new byte[0];
+            int size = 0;
+
+            for (byte[] msg : chat.getValue()) {
+                int needed = size == 0 ? msg.length : size + 1 + msg.length;
+
+                // datagram full, sending it and starting the next one
+                if (needed > maxDatagramSize && size > 0) {
+                    this.send(datagram, size, address);
+                    size = 0;
+                    needed = msg.length;
+                }
+
+                if (datagram.length < needed) {
+                    byte[] bigger = new byte[Math.max(needed, datagram.length * 2)];
+                    System.arraycopy(datagram, 0, bigger, 0, size);
+                    datagram = bigger;
+                }
+
+                if (size > 0) {
+                    datagram[size++] = '\n';
+                }
+
+                System.arraycopy(msg, 0, datagram, size, msg.length);
+                size += msg.length;
+            }
+
+            this.send(datagram, size, address);
+        }
+    }
+
+    private void send(byte[] datagram, int size, InetAddress address) {
+        if (this.socket == null) {
+            return;
+        }
+
+        try {
+            this.socket.send(new DatagramPacket(datagram, Math.min(size, maxDatagramSize), address, this.port));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // returns the address of given chat, resolving it only the first time
+    private InetAddress resolve(String chatIp) {
+        InetAddress address = this.addresses.get(chatIp);
+
+        if (address == null) {
+            try {
+                address = InetAddress.getByName(chatIp);
+                this.addresses.put(chatIp, address);
+            } catch (UnknownHostException e) {
+                e.printStackTrace();
+            }
+        }
+
+        return address;
+    }
+
+    // a message for a chat
+    private static class Announcement {
+        private final String chatIp;
+        private final String message;
+
+        private Announcement(String chatIp, String message) {
+            this.chatIp = chatIp;
+            this.message = message;
+        }
+    }
+}
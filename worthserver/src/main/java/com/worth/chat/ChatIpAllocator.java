@@ -0,0 +1,177 @@
+package com.worth.chat;
+
+import com.worth.exceptions.project.ChatIpExhaustedException;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+
+/**
+ * ChatIpAllocator assigns the multicast addresses of the projects' chats from a range.
+ * Addresses are handed out sequentially, the freed ones are kept in a free list and
+ * reused first, so both allocating and freeing take constant time.
+ * It isn't thread safe, ProjectsManager uses it holding the registry lock
+ */
+public class ChatIpAllocator {
+    // 224.0.0.0/24 is reserved to the local network control protocols
+    public static final String defaultFirst = "224.0.1.0";
+    public static final String defaultLast = "239.255.255.255";
+
+    private final long first;
+    private final long last;
+
+    private final HashSet<Integer> used;
+    private final ArrayDeque<Integer> free;
+
+    // the next address never allocated
+    private long next;
+    private long exhaustions;
+
+    public ChatIpAllocator() {
+        this(defaultFirst, defaultLast);
+    }
+
+    /**
+     * Creates an allocator of the addresses between given ones, included
+     *
+     * @param first the first address of the range
+     * @param last the last address of the range
+     */
+    public ChatIpAllocator(String first, String last) {
+        this.first = parse(first);
+        this.last = parse(last);
+
+        if (this.first < 0 || this.last < this.first) {
+            throw new IllegalArgumentException("Invalid range " + first + " - " + last);
+        }
+
+        this.used = new HashSet<>();
+        this.free = new ArrayDeque<>();
+        this.next = this.first;
+        this.exhaustions = 0;
+    }
+
+    /**
+     * Marks given address as used, as the address of a restored project
+     *
+     * @param ip the address
+     * @return false if the address was already used or is out of the range
+     */
+    public boolean reserve(String ip) {
+        long address = parse(ip);
+
+        return address >= this.first && address <= this.last && this.used.add((int) address);
+    }
+
+    /**
+     * Returns an address not used, reusing the freed ones first
+     *
+     * @return the address
+     * @throws ChatIpExhaustedException if all the addresses of the range are used
+     */
+    public String allocate() throws ChatIpExhaustedException {
+        while (!this.free.isEmpty()) {
+            int address = this.free.pop();
+
+            // reserved again after being freed
+            if (this.used.add(address)) {
+                return format(address);
+            }
+        }
+
+        // skipping the addresses reserved ahead of the sequence
+        while (this.next <= this.last) {
+            int address = (int) this.next++;
+
+            if (this.used.add(address)) {
+                return format(address);
+            }
+        }
+
+        this.exhaustions++;
+        System.out.println("[WARN]: All the " + this.getCapacity() + " chat addresses are in use");
+
+        throw new ChatIpExhaustedException("No chat address available");
+    }
+
+    /**
+     * Frees given address, making it available again
+     *
+     * @param ip the address
+     */
+    public void free(String ip) {
+        long address = parse(ip);
+
+        if (address >= this.first && address <= this.last && this.used.remove((int) address)) {
+            this.free.push((int) address);
+        }
+    }
+
+    /**
+     * Returns the number of addresses in use
+     *
+     * @return the number of addresses in use
+     */
+    public int getUsed() {
+        return this.used.size();
+    }
+
+    /**
+     * Returns the number of addresses of the range
+     *
+     * @return the number of addresses of the range
+     */
+    public long getCapacity() {
+        return this.last - this.first + 1;
+    }
+
+    /**
+     * Returns the fraction of the range in use
+     *
+     * @return the fraction of the range in use, between 0 and 1
+     */
+    public double getUtilization() {
+        return (double) this.used.size() / this.getCapacity();
+    }
+
+    /**
+     * Returns how many allocations failed because the range was exhausted
+     *
+     * @return the number of failed allocations
+     */
+    public long getExhaustions() {
+        return this.exhaustions;
+    }
+
+    // returns the unsigned value of given IPv4 address, -1 if not valid
+    private static long parse(String ip) {
+        String[] parts = ip.split("\\.");
+
+        if (parts.length != 4) {
+            return -1;
+        }
+
+        long address = 0;
+
+        for (String part : parts) {
+            int value;
+
+            try {
+                value = Integer.parseInt(part);
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+
+            if (value < 0 || value > 255) {
+                return -1;
+            }
+
+            address = (address << 8) | value;
+        }
+
+        return address;
+    }
+
+    private static String format(int address) {
+        return (address >>> 24) + "." + ((address >> 16) & 0xff) + "." + ((address >> 8) & 0xff) + "." + (address & 0xff);
+    }
+}
@@ -2,15 +2,35 @@ package com.worth.components;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.IntFunction;
 
-@JsonIgnoreProperties({"state"})
+@JsonIgnoreProperties({"state", "creationTime", "startTime"})
 public class Card {
+    // version expected by the changes made regardless of the card's version
+    public static final long ANY_VERSION = -1;
+
+    private static final CardState[] states = CardState.values();
 
     private String name;
     private String description;
-    private ArrayList<CardState> history;
+
+    // for each transition the state's ordinal, the time in milliseconds (0 if unknown)
+    // and the user who made it (null if unknown), only the first historySize are valid
+    // and they are never overwritten, so views can share the arrays
+    private byte[] history;
+    private long[] times;
+    private String[] actors;
+    private int historySize;
+
+    // last state of the history
+    private CardState state;
+
+    // number of changes made to the card
+    private long version;
 
     /**
      * Creates a card with given name and description
@@ -19,15 +39,30 @@ public class Card {
      * @param description the card's description
      */
     public Card(String name, String description) {
+        this(name, description, null);
+    }
+
+    /**
+     * Creates a card with given name and description added by given user
+     *
+     * @param name the card's name
+     * @param description the card's description
+     * @param user the user adding the card
+     */
+    public Card(String name, String description, String user) {
+        this();
         this.name = name;
         this.description = description;
-        this.history = new ArrayList<>();
 
-        this.history.add(CardState.TODO);
+        this.updateHistory(CardState.TODO, System.currentTimeMillis(), user);
     }
 
     public Card() {
-        this.history = new ArrayList<>();
+        this.history = new byte[4];
+        this.times = new long[4];
+        this.actors = new String[4];
+        this.historySize = 0;
+        this.version = 0;
     }
 
     /**
@@ -38,7 +73,12 @@ public class Card {
     public Card(Card c) {
         this.name = c.name;
         this.description = c.description;
-        this.history = new ArrayList<>(c.history);
+        this.history = Arrays.copyOf(c.history, c.historySize);
+        this.times = Arrays.copyOf(c.times, c.historySize);
+        this.actors = Arrays.copyOf(c.actors, c.historySize);
+        this.historySize = c.historySize;
+        this.state = c.state;
+        this.version = c.version;
     }
 
     /**
@@ -60,12 +100,70 @@ public class Card {
     }
 
     /**
-     * Returns the card's sates history
+     * Returns the read only card's sates history,
+     * it doesn't change when the card is moved afterwards
      *
      * @return the card's sates history
      */
     public List<CardState> getHistory() {
-        return new ArrayList<>(this.history);
+        byte[] history = this.history;
+
+        return new View<>(this.historySize, i -> states[history[i]]);
+    }
+
+    /**
+     * Returns the read only times of the history's transitions
+     *
+     * @return the times in milliseconds, 0 if unknown
+     */
+    public List<Long> getTimes() {
+        long[] times = this.times;
+
+        return new View<>(this.historySize, i -> times[i]);
+    }
+
+    /**
+     * Returns the read only users who made the history's transitions
+     *
+     * @return the users, null if unknown
+     */
+    public List<String> getActors() {
+        String[] actors = this.actors;
+
+        return new View<>(this.historySize, i -> actors[i]);
+    }
+
+    /**
+     * Returns the card's version, incremented by each change
+     *
+     * @return the card's version
+     */
+    public long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Returns the time the card was added
+     *
+     * @return the time in milliseconds, 0 if unknown
+     */
+    public long getCreationTime() {
+        return this.historySize == 0 ? 0 : this.times[0];
+    }
+
+    /**
+     * Returns the time the card was moved in INPROGRESS for the first time
+     *
+     * @return the time in milliseconds, 0 if unknown or never moved
+     */
+    public long getStartTime() {
+        for (int i = 0; i < this.historySize; i++) {
+            if (this.history[i] == CardState.INPROGRESS.ordinal()) {
+                return this.times[i];
+            }
+        }
+
+        return 0;
     }
 
     /**
@@ -92,7 +190,51 @@ public class Card {
      * @param history the history
      */
     public void setHistory(List<CardState> history) {
-        this.history = new ArrayList<>(history);
+        this.ensureCapacity(history.size());
+        this.historySize = 0;
+        this.state = null;
+
+        for (CardState state : history) {
+            this.history[this.historySize++] = (byte) state.ordinal();
+            this.state = state;
+        }
+
+        this.version = Math.max(this.version, this.historySize);
+    }
+
+    /**
+     * Sets card's version, cards saved by older versions get the length of their history
+     *
+     * @param version the version
+     */
+    public void setVersion(long version) {
+        this.version = Math.max(version, this.historySize);
+    }
+
+    /**
+     * Sets the times of the history's transitions, missing in cards saved by older versions
+     *
+     * @param times the times in milliseconds
+     */
+    public void setTimes(List<Long> times) {
+        this.ensureCapacity(times.size());
+
+        for (int i = 0; i < times.size(); i++) {
+            this.times[i] = times.get(i) == null ? 0 : times.get(i);
+        }
+    }
+
+    /**
+     * Sets the users who made the history's transitions, missing in cards saved by older versions
+     *
+     * @param actors the users
+     */
+    public void setActors(List<String> actors) {
+        this.ensureCapacity(actors.size());
+
+        for (int i = 0; i < actors.size(); i++) {
+            this.actors[i] = actors.get(i);
+        }
     }
 
     /**
@@ -101,7 +243,25 @@ public class Card {
      * @param state the new card's state
      */
     public void updateHistory(CardState state) {
-        this.history.add(state);
+        this.updateHistory(state, System.currentTimeMillis(), null);
+    }
+
+    /**
+     * Adds a new card's state in states history
+     *
+     * @param state the new card's state
+     * @param time the transition's time in milliseconds
+     * @param user the user making the transition
+     */
+    public void updateHistory(CardState state, long time, String user) {
+        this.ensureCapacity(this.historySize + 1);
+
+        this.history[this.historySize] = (byte) state.ordinal();
+        this.times[this.historySize] = time;
+        this.actors[this.historySize] = user;
+        this.historySize++;
+        this.state = state;
+        this.version++;
     }
 
     /**
@@ -110,6 +270,41 @@ public class Card {
      * @return the current card state
      */
     public CardState getState() {
-        return this.history.get(this.history.size()-1);
+        return this.state;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > this.history.length) {
+            capacity = Math.max(capacity, this.history.length * 2);
+
+            this.history = Arrays.copyOf(this.history, capacity);
+            this.times = Arrays.copyOf(this.times, capacity);
+            this.actors = Arrays.copyOf(this.actors, capacity);
+        }
+    }
+
+    // read only list of the first size transitions
+    private static class View<T> extends AbstractList<T> implements RandomAccess {
+        private final int size;
+        private final IntFunction<T> getter;
+
+        private View(int size, IntFunction<T> getter) {
+            this.size = size;
+            this.getter = getter;
+        }
+
+        @Override
+        public T get(int index) {
+            if (index < 0 || index >= this.size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+            }
+
+            return this.getter.apply(index);
+        }
+
+        @Override
+        public int size() {
+            return this.size;
+        }
     }
 }
@@ -0,0 +1,79 @@
+package com.worth.components;
+
+/**
+ * FlowStats implements an aggregate of durations, as the lead times
+ * or the cycle times of a project's cards, updated one sample at a time
+ */
+public class FlowStats {
+    private long count;
+    private long sum;
+    private long min;
+    private long max;
+
+    public FlowStats() {
+        this.count = 0;
+        this.sum = 0;
+        this.min = 0;
+        this.max = 0;
+    }
+
+    /**
+     * Makes a copy of given aggregate
+     *
+     * @param s the aggregate to copy
+     */
+    public FlowStats(FlowStats s) {
+        this.count = s.count;
+        this.sum = s.sum;
+        this.min = s.min;
+        this.max = s.max;
+    }
+
+    /**
+     * Adds a duration to the aggregate
+     *
+     * @param duration the duration in milliseconds
+     */
+    public void add(long duration) {
+        this.min = this.count == 0 ? duration : Math.min(this.min, duration);
+        this.max = this.count == 0 ? duration : Math.max(this.max, duration);
+        this.sum += duration;
+        this.count++;
+    }
+
+    /**
+     * Returns the number of durations
+     *
+     * @return the number of durations
+     */
+    public long getCount() {
+        return this.count;
+    }
+
+    /**
+     * Returns the mean duration
+     *
+     * @return the mean duration in milliseconds, 0 if there are no durations
+     */
+    public long getMean() {
+        return this.count == 0 ? 0 : this.sum / this.count;
+    }
+
+    /**
+     * Returns the shortest duration
+     *
+     * @return the shortest duration in milliseconds, 0 if there are no durations
+     */
+    public long getMin() {
+        return this.min;
+    }
+
+    /**
+     * Returns the longest duration
+     *
+     * @return the longest duration in milliseconds, 0 if there are no durations
+     */
+    public long getMax() {
+        return this.max;
+    }
+}
@@ -2,28 +2,69 @@ package com.worth.components;
 
 import com.worth.exceptions.card.CardAlreadyExistsException;
 import com.worth.exceptions.card.CardNotFoundException;
+import com.worth.exceptions.card.CardVersionMismatchException;
 import com.worth.exceptions.card.IllegalCardMovementException;
 import com.worth.exceptions.user.UserAlreadyMemberException;
 
 import java.util.*;
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Project implements a project's members and cards.
+ * Its state is changed by a single writer at a time, holding the project's lock,
+ * while readers can run without locking: the state is kept in concurrent structures,
+ * so a read overlapping a write can see an inconsistent state but never fails badly,
+ * and the lock's stamp tells if the read has to be retried
+ */
 public class Project {
+    // number of the most recent changes kept in the change log
+    public static final int changeLogSize = 1024;
+
     private final String name;
-    private final HashMap<String, Card> todo;
-    private final HashMap<String, Card> inProgress;
-    private final HashMap<String, Card> toBeRevised;
-    private final HashMap<String, Card> done;
-    private final ArrayList<String> members;
+
+    // all the project's cards, the state is kept by each card
+    private final ConcurrentHashMap<String, Card> cards;
+
+    // number of cards in each state, indexed by the state's ordinal
+    private final AtomicIntegerArray stateCounts;
+
+    // durations of the done cards from their addition and from their start
+    private final FlowStats leadTimes;
+    private final FlowStats cycleTimes;
+
+    // members for the membership checks
+    private final Set<String> memberSet;
+
+    // read only list of the members in order of addition, replaced at each addition
+    private volatile List<String> members;
+
     private final String chatIp;
 
+    // number of changes made to the project, written only holding the lock
+    private volatile long version;
+
+    // the card changed by each of the most recent changes, null for the members' changes,
+    // change v is at v % changeLogSize, allocated at the first change
+    private String[] changeLog;
+
+    // the log has the changes made after this version, the restored ones are not logged
+    private long changeLogStart;
+
+    // guards the project's state, taken by ProjectsManager
+    private final StampedLock lock;
+
     public Project(String name, String chatIp) {
+        this.lock = new StampedLock();
         this.name = name;
         this.chatIp = chatIp;
-        this.members = new ArrayList<>();
-        this.todo = new HashMap<>();
-        this.inProgress = new HashMap<>();
-        this.toBeRevised = new HashMap<>();
-        this.done = new HashMap<>();
+        this.memberSet = ConcurrentHashMap.newKeySet();
+        this.members = Collections.emptyList();
+        this.cards = new ConcurrentHashMap<>();
+        this.stateCounts = new AtomicIntegerArray(CardState.values().length);
+        this.leadTimes = new FlowStats();
+        this.cycleTimes = new FlowStats();
     }
 
     /**
@@ -45,12 +86,31 @@ public class Project {
     }
 
     /**
-     * Returns the list of all project's members
+     * Returns the project's version, incremented by each card or member added and by each card moved
+     *
+     * @return the project's version
+     */
+    public long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Returns the lock guarding the project's state
+     *
+     * @return the lock guarding the project's state
+     */
+    public StampedLock getLock() {
+        return this.lock;
+    }
+
+    /**
+     * Returns the read only list of all project's members,
+     * it doesn't change when members are added afterwards
      *
      * @return the list of all project's members
      */
     public List<String> getMembers() {
-        return new Vector<>(this.members);
+        return this.members;
     }
 
     /**
@@ -62,19 +122,29 @@ public class Project {
      * @throws CardAlreadyExistsException if card already exists in the project
      */
     public void addCard(String cardName, String description) throws CardAlreadyExistsException {
+        this.addCard(cardName, description, null);
+    }
 
-        Card c = new Card(cardName, description);
+    /**
+     * Adds card with given name and description to project on behalf of given user
+     * and initializes it's state in TODO
+     *
+     * @param cardName the card's name
+     * @param description the card's description
+     * @param user the user adding the card
+     * @throws CardAlreadyExistsException if card already exists in the project
+     */
+    public void addCard(String cardName, String description, String user) throws CardAlreadyExistsException {
+
+        Card c = new Card(cardName, description, user);
 
         // checking if card is already in project
-        if (this.todo.containsKey(cardName) ||
-                this.inProgress.containsKey(cardName) ||
-                this.toBeRevised.containsKey(cardName) ||
-                this.done.containsKey(cardName))
-        {
+        if (this.cards.putIfAbsent(cardName, c) != null) {
             throw new CardAlreadyExistsException("Card " + cardName + " already exists in project " + this.name);
         }
 
-        this.todo.put(cardName, c);
+        this.stateCounts.incrementAndGet(CardState.TODO.ordinal());
+        this.logChange(cardName);
     }
 
     /**
@@ -87,50 +157,119 @@ public class Project {
      */
     public Card getCard(String cardName) throws CardNotFoundException {
 
+        Card c = this.cards.get(cardName);
 
-        if (this.todo.containsKey(cardName)) {
-            return new Card(this.todo.get(cardName));
-
-        } else if (this.inProgress.containsKey(cardName)) {
-            return new Card(this.inProgress.get(cardName));
-
-        } else if (this.toBeRevised.containsKey(cardName)) {
-            return new Card(this.toBeRevised.get(cardName));
-
-        } else if (this.done.containsKey(cardName)) {
-            return new Card(this.done.get(cardName));
+        if (c == null) {
+            throw new CardNotFoundException("Card " + cardName + " doesn't exist in project " + this.name);
         }
 
-        throw new CardNotFoundException("Card " + cardName + " doesn't exist in project " + this.name);
+        return new Card(c);
     }
 
     /**
-     * Returns the list of all the cards in the project
+     * Returns the list of all the cards in the project, grouped by state
      *
      * @return the list of all the cards in the project
      */
     public List<String> getCards() {
-        ArrayList<String> cards = new ArrayList<>();
+        CardState[] states = CardState.values();
+        List<List<String>> byState = new ArrayList<>(states.length);
 
-        for (Card c : this.todo.values()) {
-            cards.add(c.getName());
+        for (CardState state : states) {
+            byState.add(new ArrayList<>(this.stateCounts.get(state.ordinal())));
         }
 
-        for (Card c : this.inProgress.values()) {
-            cards.add(c.getName());
+        for (Card c : this.cards.values()) {
+            byState.get(c.getState().ordinal()).add(c.getName());
         }
 
-        for (Card c : this.toBeRevised.values()) {
-            cards.add(c.getName());
-        }
+        ArrayList<String> cards = new ArrayList<>(this.cards.size());
 
-        for (Card c : this.done.values()) {
-            cards.add(c.getName());
+        for (List<String> names : byState) {
+            cards.addAll(names);
         }
 
         return cards;
     }
 
+    /**
+     * Returns the number of cards in each state
+     *
+     * @return the number of cards in each state, in states' order
+     */
+    public Map<CardState, Integer> getStateCounts() {
+        EnumMap<CardState, Integer> counts = new EnumMap<>(CardState.class);
+
+        for (CardState state : CardState.values()) {
+            counts.put(state, this.stateCounts.get(state.ordinal()));
+        }
+
+        return counts;
+    }
+
+    /**
+     * Returns the lead times, from addition to done, and the cycle times,
+     * from the first start to done, of the project's done cards
+     *
+     * @return the aggregates of the lead times and of the cycle times
+     */
+    public Map<String, FlowStats> getFlowMetrics() {
+        Map<String, FlowStats> metrics = new LinkedHashMap<>();
+
+        metrics.put("leadTime", new FlowStats(this.leadTimes));
+        metrics.put("cycleTime", new FlowStats(this.cycleTimes));
+
+        return metrics;
+    }
+
+    /**
+     * Returns the cards added or moved after given version, as copies. If the changes
+     * are no more in the change log, or the version is unknown, all the cards are returned
+     *
+     * @param since the last version known by the client
+     * @return the project's version as "version", true if all the cards are returned as "full",
+     *         the cards as "cards"
+     */
+    public Map<String, Object> getChangesSince(long since) {
+        long version = this.version;
+        boolean full = since < this.changeLogStart || since < version - changeLogSize || since > version;
+        Collection<Card> changed;
+
+        if (full) {
+            changed = this.cards.values();
+        } else {
+            LinkedHashSet<String> names = new LinkedHashSet<>();
+
+            for (long v = since + 1; v <= version; v++) {
+                String cardName = this.changeLog[(int) (v % changeLogSize)];
+
+                if (cardName != null) {
+                    names.add(cardName);
+                }
+            }
+
+            changed = new ArrayList<>(names.size());
+
+            for (String cardName : names) {
+                changed.add(this.cards.get(cardName));
+            }
+        }
+
+        List<Card> cards = new ArrayList<>(changed.size());
+
+        for (Card c : changed) {
+            cards.add(new Card(c));
+        }
+
+        Map<String, Object> changes = new LinkedHashMap<>();
+
+        changes.put("version", version);
+        changes.put("full", full);
+        changes.put("cards", cards);
+
+        return changes;
+    }
+
     /**
      * Returns the history of a card
      *
@@ -139,44 +278,52 @@ public class Project {
      */
     public List<CardState> getCardHistory(String cardName) {
 
-        if (this.todo.containsKey(cardName)) {
-            return this.todo.get(cardName).getHistory();
+        Card c = this.cards.get(cardName);
 
-        } else if (this.inProgress.containsKey(cardName)) {
-            return this.inProgress.get(cardName).getHistory();
+        return c == null ? null : c.getHistory();
+    }
 
-        } else if (this.toBeRevised.containsKey(cardName)) {
-            return this.toBeRevised.get(cardName).getHistory();
+    /**
+     * Returns the current card's version
+     *
+     * @param cardName the card's name
+     * @return the current card's version if card exists, Card.ANY_VERSION otherwise
+     */
+    public long getCardVersion(String cardName) {
 
-        } else if (this.done.containsKey(cardName)) {
-            return this.done.get(cardName).getHistory();
-        }
+        Card c = this.cards.get(cardName);
 
-        return null;
+        return c == null ? Card.ANY_VERSION : c.getVersion();
     }
 
     /**
-     * Returns the current card's state
+     * Checks that given card has given version
      *
      * @param cardName the card's name
-     * @return the current card's state if card exists, null otherwise
+     * @param expectedVersion the expected version or Card.ANY_VERSION
+     * @throws CardVersionMismatchException if card exists and has a different version
      */
-    public CardState getCardState(String cardName) {
+    public void checkCardVersion(String cardName, long expectedVersion) throws CardVersionMismatchException {
 
-        if (this.todo.containsKey(cardName)) {
-            return CardState.TODO;
+        long version = this.getCardVersion(cardName);
 
-        } else if (this.inProgress.containsKey(cardName)) {
-            return CardState.INPROGRESS;
+        if (expectedVersion != Card.ANY_VERSION && version != Card.ANY_VERSION && version != expectedVersion) {
+            throw new CardVersionMismatchException("Card " + cardName + " has version " + version +
+                    ", expected " + expectedVersion);
+        }
+    }
 
-        } else if (this.toBeRevised.containsKey(cardName)) {
-            return CardState.TOBEREVISED;
+    /**
+     * Returns the current card's state
+     *
+     * @param cardName the card's name
+     * @return the current card's state if card exists, null otherwise
+     */
+    public CardState getCardState(String cardName) {
 
-        } else if (this.done.containsKey(cardName)) {
-            return CardState.DONE;
-        }
+        Card c = this.cards.get(cardName);
 
-        return null;
+        return c == null ? null : c.getState();
     }
 
     /**
@@ -188,13 +335,29 @@ public class Project {
      * @throws CardNotFoundException if card with given name doesn't exist in project
      */
     public void moveCard(String cardName, CardState dst) throws IllegalCardMovementException, CardNotFoundException {
+        this.moveCard(cardName, dst, null);
+    }
 
-        CardState state = this.getCardState(cardName);
+    /**
+     * Moves given card to given position on behalf of given user, updating it's history
+     *
+     * @param cardName the card's name to move
+     * @param dst the destination state
+     * @param user the user moving the card
+     * @throws IllegalCardMovementException if movement in given destination is not permitted
+     * @throws CardNotFoundException if card with given name doesn't exist in project
+     */
+    public void moveCard(String cardName, CardState dst, String user)
+            throws IllegalCardMovementException, CardNotFoundException {
 
-        if (state == null) {
+        Card c = this.cards.get(cardName);
+
+        if (c == null) {
             throw new CardNotFoundException("Card " + cardName + " doesn't exist in project " + this.name);
         }
 
+        CardState state = c.getState();
+
 
         switch (state) {
 
@@ -203,7 +366,7 @@ public class Project {
 
                 if (dst == CardState.INPROGRESS) {
                     // todo --> inProgress
-                    this.move(cardName, this.todo, this.inProgress, CardState.INPROGRESS);
+                    this.move(c, CardState.INPROGRESS, user);
 
                 } else {
                     throw new IllegalCardMovementException("Can't move a card from TODO to " + dst);
@@ -215,11 +378,11 @@ public class Project {
 
                 if (dst == CardState.TOBEREVISED) {
                     // inProgress --> toBeRevised
-                    this.move(cardName, this.inProgress, this.toBeRevised, CardState.TOBEREVISED);
+                    this.move(c, CardState.TOBEREVISED, user);
 
                 } else if (dst == CardState.DONE) {
                     // inProgress --> done
-                    this.move(cardName, this.inProgress, this.done, CardState.DONE);
+                    this.move(c, CardState.DONE, user);
 
                 } else {
                     throw new IllegalCardMovementException("Can't move a card from INPROGRESS to " + dst);
@@ -231,11 +394,11 @@ public class Project {
 
                 if (dst == CardState.DONE) {
                     // toBeRevised --> done
-                    this.move(cardName, this.toBeRevised, this.done, CardState.DONE);
+                    this.move(c, CardState.DONE, user);
 
                 } else if (dst == CardState.INPROGRESS) {
                     // toBeRevised --> inProgress
-                    this.move(cardName, this.toBeRevised, this.inProgress, CardState.INPROGRESS);
+                    this.move(c, CardState.INPROGRESS, user);
 
                 } else {
                     throw new IllegalCardMovementException("Can't move a card from TOBEREVISED to " + dst);
@@ -248,6 +411,24 @@ public class Project {
         }
     }
 
+    /**
+     * Moves given card to given position on behalf of given user, only if the card has given version
+     *
+     * @param cardName the card's name to move
+     * @param dst the destination state
+     * @param user the user moving the card
+     * @param expectedVersion the card's expected version or Card.ANY_VERSION
+     * @throws IllegalCardMovementException if movement in given destination is not permitted
+     * @throws CardNotFoundException if card with given name doesn't exist in project
+     * @throws CardVersionMismatchException if the card's version is not the expected one
+     */
+    public void moveCard(String cardName, CardState dst, String user, long expectedVersion)
+            throws IllegalCardMovementException, CardNotFoundException, CardVersionMismatchException {
+
+        this.checkCardVersion(cardName, expectedVersion);
+        this.moveCard(cardName, dst, user);
+    }
+
     /**
      * Sets given user as a member of the project
      *
@@ -256,11 +437,12 @@ public class Project {
      */
     public void addMember(String user) throws UserAlreadyMemberException {
 
-        if (this.isMember(user)) {
+        if (!this.memberSet.add(user)) {
             throw new UserAlreadyMemberException("User " + user + " is already a member of project " + this.name);
         }
 
-        this.members.add(user);
+        this.publishMembers(Collections.singletonList(user));
+        this.logChange(null);
     }
 
     /**
@@ -271,13 +453,8 @@ public class Project {
      */
     public boolean isMember(String user) {
 
-        for (String member : this.members) {
-            if (member.equals(user)) {
-                return true;
-            }
-        }
-
-        return false;
+        // user is null if not logged in
+        return user != null && this.memberSet.contains(user);
     }
 
     /**
@@ -287,48 +464,95 @@ public class Project {
      */
     public boolean isFinished() {
 
-        return ((this.todo.size() == 0) &&
-                (this.inProgress.size() == 0) &&
-                (this.toBeRevised.size()== 0));
+        return ((this.stateCounts.get(CardState.TODO.ordinal()) == 0) &&
+                (this.stateCounts.get(CardState.INPROGRESS.ordinal()) == 0) &&
+                (this.stateCounts.get(CardState.TOBEREVISED.ordinal()) == 0));
     }
 
-    private void move(String cardName, HashMap<String, Card> src, HashMap<String, Card> dst, CardState dstState) {
+    private void move(Card c, CardState dstState, String user) {
+        long now = System.currentTimeMillis();
 
-        dst.put(cardName, src.get(cardName));
-        src.remove(cardName);
+        this.stateCounts.decrementAndGet(c.getState().ordinal());
+        this.stateCounts.incrementAndGet(dstState.ordinal());
 
         // updating card states history
-        dst.get(cardName).updateHistory(dstState);
+        c.updateHistory(dstState, now, user);
+        this.logChange(c.getName());
+
+        if (dstState == CardState.DONE) {
+            this.addFlowTimes(c, now);
+        }
+    }
+
+    // adds the lead and cycle times of given card, done at given time, when known
+    private void addFlowTimes(Card c, long doneTime) {
+        long created = c.getCreationTime();
+        long started = c.getStartTime();
+
+        if (created > 0 && doneTime >= created) {
+            this.leadTimes.add(doneTime - created);
+        }
+
+        if (started > 0 && doneTime >= started) {
+            this.cycleTimes.add(doneTime - started);
+        }
+    }
+
+    // records a change of given card, null for a change of the members
+    private void logChange(String cardName) {
+        if (this.changeLog == null) {
+            this.changeLog = new String[changeLogSize];
+        }
+
+        this.changeLog[(int) ((this.version + 1) % changeLogSize)] = cardName;
+        this.version++;
+    }
+
+    // replaces the members' list with a copy having also given new members
+    private void publishMembers(List<String> added) {
+        String[] members = this.members.toArray(new String[this.members.size() + added.size()]);
+        int i = this.members.size();
+
+        for (String user : added) {
+            members[i++] = user;
+        }
+
+        this.members = Collections.unmodifiableList(Arrays.asList(members));
     }
 
     // methods used only by Reader class
 
     public void addCards(List<Card> cards) {
         for (Card c : cards) {
+            Card old = this.cards.put(c.getName(), c);
 
-            switch (c.getState()) {
-                case TODO:
-                    this.todo.put(c.getName(), c);
-                    break;
-
-                case INPROGRESS:
-                    this.inProgress.put(c.getName(), c);
-                    break;
+            if (old != null) {
+                this.stateCounts.decrementAndGet(old.getState().ordinal());
+                this.version -= old.getVersion();
+            }
 
-                case TOBEREVISED:
-                    this.toBeRevised.put(c.getName(), c);
-                    break;
+            this.stateCounts.incrementAndGet(c.getState().ordinal());
+            this.version += c.getVersion();
+            this.changeLogStart = this.version;
 
-                case DONE:
-                    this.done.put(c.getName(), c);
-                    break;
+            if (c.getState() == CardState.DONE) {
+                List<Long> times = c.getTimes();
+                this.addFlowTimes(c, times.get(times.size() - 1));
             }
         }
     }
 
     public void addMembers(List<String> members) {
+        List<String> added = new ArrayList<>(members.size());
+
         for (String user : members) {
-            this.members.add(user);
+            if (this.memberSet.add(user)) {
+                added.add(user);
+            }
         }
+
+        this.publishMembers(added);
+        this.version += added.size();
+        this.changeLogStart = this.version;
     }
 }
@@ -0,0 +1,8 @@
+package com.worth.exceptions;
+
+public class ProtocolException extends Exception {
+
+    public ProtocolException(String s) {
+        super(s);
+    }
+}
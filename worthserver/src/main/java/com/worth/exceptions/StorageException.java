@@ -0,0 +1,8 @@
+package com.worth.exceptions;
+
+public class StorageException extends Exception {
+
+    public StorageException(String s) {
+        super(s);
+    }
+}
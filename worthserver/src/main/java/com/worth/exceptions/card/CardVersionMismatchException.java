@@ -0,0 +1,7 @@
+package com.worth.exceptions.card;
+
+public class CardVersionMismatchException extends Exception {
+    public CardVersionMismatchException(String s) {
+        super(s);
+    }
+}
@@ -0,0 +1,7 @@
+package com.worth.exceptions.project;
+
+public class ChatIpExhaustedException extends Exception {
+    public ChatIpExhaustedException(String s) {
+        super(s);
+    }
+}
@@ -0,0 +1,66 @@
+package com.worth.io;
+
+import com.worth.components.Card;
+import com.worth.components.Project;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * FilePersistence saves each project as a directory under db/projects,
+ * with a file for each card rewritten at each change. Files are not forced to disk,
+ * a change is considered durable once written
+ */
+public class FilePersistence implements Persistence {
+
+    @Override
+    public List<Project> restoreProjects() {
+        return Reader.restoreProjects();
+    }
+
+    @Override
+    public void restoreProjects(Consumer<Project> consumer) {
+        Reader.restoreProjects(consumer);
+    }
+
+    @Override
+    public CompletableFuture<Void> addProject(Project p) {
+        Writer.addProject(p);
+
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> delProject(Project p) {
+        Writer.delProject(p);
+
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> updateMembers(Project p) {
+        Writer.updateMembers(p);
+
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> updateCard(Project p, Card c) {
+        Writer.updateCard(p, c);
+
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> updateCards(Project p, List<Card> cards) {
+        Writer.updateCards(p, cards);
+
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public void close() {
+        // every change is already written
+    }
+}
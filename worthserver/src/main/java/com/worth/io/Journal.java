@@ -0,0 +1,861 @@
+package com.worth.io;
+
+import com.worth.components.Card;
+import com.worth.components.CardState;
+import com.worth.components.Project;
+import com.worth.exceptions.card.CardNotFoundException;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Journal saves the projects' changes as compact records appended to a single file,
+ * so that each change is a sequential write instead of the rewrite of a whole card.
+ * At startup the records are replayed in order to rebuild the projects, a record
+ * partially written by a crash is detected by its checksum and discarded.
+ * Each record is its payload's length (int), the payload's CRC32 (int) and the payload:
+ * the record's type (byte), the project's name and the fields of the type.
+ * Records are committed in groups by a dedicated thread: the records appended
+ * concurrently, or within a window after the first one, are written together
+ * and forced to disk once, then their futures are completed.
+ * A snapshot saves the whole state of the projects in a separate file, written with the
+ * same records, and the journal is then compacted to the records appended after the
+ * snapshot began, so that startup replays the snapshot and a short tail. The replay
+ * is idempotent: a project created again replaces the previous one, a member already
+ * known and a card's transition with an index already replayed are skipped, so the tail
+ * can overlap the snapshot, and a crash before the compaction only replays more records.
+ * A group failing to be written is cut from the file, so that no record follows a torn one,
+ * and the journal then rejects all the appends, as the records following the ones lost
+ * would be replayed without them
+ */
+public class Journal implements Persistence, Runnable {
+    public static final String defaultPath = "db/journal";
+
+    // no waiting by default, the records appended while a group is forced form the next group
+    public static final long defaultWindowMicros = 0;
+    public static final int defaultMaxBatch = 1024;
+
+    // seconds between two snapshots taken by the server
+    public static final long defaultSnapshotSeconds = 600;
+
+    // a project with its chat's ip
+    private static final byte PROJECT_CREATED = 1;
+    // a project
+    private static final byte PROJECT_DELETED = 2;
+    // a project and the member added
+    private static final byte MEMBER_ADDED = 3;
+    // a project, the card's name, the transition's index, the state's ordinal, the time, the user
+    // and the card's description if the index is 0
+    private static final byte CARD_TRANSITION = 6;
+
+    private static final int maxRecordSize = 16 * 1024 * 1024;
+    private static final CardState[] states = CardState.values();
+
+    private final String path;
+
+    // replaced by the compaction, used only by the committer after opening
+    private FileChannel channel;
+
+    // appends waiting to be committed, an empty buffer asks the committer to stop
+    private final LinkedBlockingQueue<Append> queue;
+    private final long windowNanos;
+    private final int maxBatch;
+    private final Thread committer;
+    private volatile boolean closed;
+
+    // set by the committer when a group can't be written
+    private volatile boolean failed;
+
+    // committed groups and appends, largest group
+    private final AtomicLong batches;
+    private final AtomicLong appends;
+    private final AtomicInteger maxBatchSize;
+
+    // number of members and of each card's transitions already in the journal, by project,
+    // the changes of a project are saved by a single thread at a time
+    private final ConcurrentHashMap<String, Integer> members;
+    private final ConcurrentHashMap<String, Map<String, Integer>> transitions;
+
+    private final List<Project> restored;
+
+    // records replayed when opened
+    private long replayed;
+
+    /**
+     * Opens the journal at given path with the default group commit settings
+     *
+     * @param path the journal's path
+     * @throws IOException if the journal can't be opened or read
+     */
+    public Journal(String path) throws IOException {
+        this(path, defaultWindowMicros, defaultMaxBatch);
+    }
+
+    /**
+     * Opens the journal at given path, creating it if doesn't exist,
+     * replays the last snapshot and the journal's records and starts the committer thread
+     *
+     * @param path the journal's path
+     * @param windowMicros how long to wait for more appends after the first one of a group
+     * @param maxBatch the maximum number of appends committed together
+     * @throws IOException if the journal can't be opened or read
+     */
+    public Journal(String path, long windowMicros, int maxBatch) throws IOException {
+        this.members = new ConcurrentHashMap<>();
+        this.transitions = new ConcurrentHashMap<>();
+        this.queue = new LinkedBlockingQueue<>();
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.maxBatch = Math.max(1, maxBatch);
+        this.batches = new AtomicLong();
+        this.appends = new AtomicLong();
+        this.maxBatchSize = new AtomicInteger();
+        this.path = path;
+        this.channel = FileChannel.open(Paths.get(path),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.restored = this.replay();
+
+        this.committer = new Thread(this, "journal-committer");
+        this.committer.setDaemon(true);
+        this.committer.start();
+    }
+
+    /**
+     * Returns the projects rebuilt replaying the journal when opened
+     *
+     * @return the projects rebuilt replaying the journal
+     */
+    @Override
+    public List<Project> restoreProjects() {
+        return this.restored;
+    }
+
+    @Override
+    public CompletableFuture<Void> addProject(Project p) {
+        Records records = new Records();
+
+        this.members.put(p.getName(), 0);
+        this.transitions.put(p.getName(), new HashMap<>());
+
+        try {
+            records.start(PROJECT_CREATED, p.getName());
+            writeString(records.out, p.getChatIp());
+            records.end();
+
+            this.memberRecords(records, p);
+
+            for (String cardName : p.getCards()) {
+                this.cardRecords(records, p.getName(), p.getCard(cardName));
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        return this.append(records);
+    }
+
+    @Override
+    public CompletableFuture<Void> delProject(Project p) {
+        Records records = new Records();
+
+        this.members.remove(p.getName());
+        this.transitions.remove(p.getName());
+
+        try {
+            records.start(PROJECT_DELETED, p.getName());
+            records.end();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return this.append(records);
+    }
+
+    @Override
+    public CompletableFuture<Void> updateMembers(Project p) {
+        Records records = new Records();
+
+        try {
+            this.memberRecords(records, p);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return this.append(records);
+    }
+
+    @Override
+    public CompletableFuture<Void> updateCard(Project p, Card c) {
+        Records records = new Records();
+
+        try {
+            this.cardRecords(records, p.getName(), c);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return this.append(records);
+    }
+
+    @Override
+    public CompletableFuture<Void> updateCards(Project p, List<Card> cards) {
+        Records records = new Records();
+
+        try {
+            for (Card c : cards) {
+                this.cardRecords(records, p.getName(), c);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return this.append(records);
+    }
+
+    /**
+     * Commits the pending records and closes the journal
+     */
+    @Override
+    public void close() {
+        if (this.closed) {
+            return;
+        }
+
+        this.closed = true;
+        this.queue.add(new Append(ByteBuffer.allocate(0)));
+
+        try {
+            this.committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Returns the number of committed groups, the number of appends they had,
+     * the mean and the largest number of appends in a group
+     *
+     * @return the group commit metrics, by name
+     */
+    @Override
+    public Map<String, Number> getMetrics() {
+        long batches = this.batches.get();
+        long appends = this.appends.get();
+        Map<String, Number> metrics = new LinkedHashMap<>();
+
+        metrics.put("batches", batches);
+        metrics.put("appends", appends);
+        metrics.put("meanBatchSize", batches == 0 ? 0.0 : (double) appends / batches);
+        metrics.put("maxBatchSize", this.maxBatchSize.get());
+
+        return metrics;
+    }
+
+    /**
+     * Saves a snapshot of the projects and discards the records it contains.
+     * The projects are read after the records appended so far have been written,
+     * so the snapshot contains at least their changes, then the journal is cut
+     * to the records written afterwards. The appends go on meanwhile
+     *
+     * @param projects returns a copy of the projects, each one consistent
+     * @throws IOException if the snapshot can't be saved or the journal compacted
+     */
+    @Override
+    public void snapshot(Supplier<List<Project>> projects) throws IOException {
+        long cut = await(this.inCommitter(() -> this.channel.position()));
+        List<Project> state = projects.get();
+        Path tmp = Paths.get(this.path + ".snapshot.tmp");
+
+        try (FileChannel out = FileChannel.open(tmp,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            for (Project p : state) {
+                Records records = new Records();
+                snapshotRecords(records, p);
+
+                ByteBuffer buf = ByteBuffer.wrap(records.toByteArray());
+
+                while (buf.hasRemaining()) {
+                    out.write(buf);
+                }
+            }
+
+            out.force(true);
+        }
+
+        // a crash leaves the previous snapshot or the new one, never a partial one
+        Files.move(tmp, Paths.get(this.path + ".snapshot"),
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        long tail = await(this.inCommitter(() -> this.compact(cut)));
+
+        System.out.println("[INFO]: Snapshot of " + state.size() + " projects, journal compacted from "
+                + (cut + tail) + " to " + tail + " bytes");
+    }
+
+    @Override
+    public void run() {
+        List<Append> batch = new ArrayList<>(this.maxBatch);
+        boolean end = false;
+
+        while (!end) {
+            try {
+                batch.add(this.queue.take());
+
+                // waiting for more appends within the window
+                long deadline = System.nanoTime() + this.windowNanos;
+                long left;
+
+                while (batch.size() < this.maxBatch && (left = deadline - System.nanoTime()) > 0) {
+                    Append next = this.queue.poll(left, TimeUnit.NANOSECONDS);
+
+                    if (next == null) {
+                        break;
+                    }
+
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                end = true;
+            }
+
+            this.queue.drainTo(batch, this.maxBatch - batch.size());
+
+            // the appends queued before close are committed
+            if (batch.removeIf(a -> a.task == null && !a.buf.hasRemaining())) {
+                end = true;
+                this.queue.drainTo(batch);
+            }
+
+            this.commitAll(batch);
+            batch.clear();
+        }
+    }
+
+    // commits the appends in groups, running each task after the appends queued before it
+    private void commitAll(List<Append> batch) {
+        List<Append> group = new ArrayList<>(batch.size());
+
+        for (Append a : batch) {
+            if (a.task == null) {
+                group.add(a);
+                continue;
+            }
+
+            if (!group.isEmpty()) {
+                this.commit(group);
+                group.clear();
+            }
+
+            a.task.run();
+        }
+
+        if (!group.isEmpty()) {
+            this.commit(group);
+        }
+    }
+
+    // runs given task in the committer, after the appends queued so far are written
+    private <T> CompletableFuture<T> inCommitter(Callable<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+
+        Append a = new Append(() -> {
+            try {
+                result.complete(task.call());
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        });
+
+        if (this.closed) {
+            result.completeExceptionally(new IOException("Journal closed"));
+        } else if (this.failed) {
+            result.completeExceptionally(new IOException("Journal failed"));
+        } else {
+            this.queue.add(a);
+        }
+
+        return result;
+    }
+
+    // replaces the journal with its records from given position on, run by the committer
+    private long compact(long cut) throws IOException {
+        Path journal = Paths.get(this.path);
+        Path tmp = Paths.get(this.path + ".tmp");
+        long end = this.channel.position();
+
+        try (FileChannel out = FileChannel.open(tmp,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            long copied = 0;
+
+            while (copied < end - cut) {
+                copied += this.channel.transferTo(cut + copied, end - cut - copied, out);
+            }
+
+            out.force(true);
+        }
+
+        Files.move(tmp, journal, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        this.channel.close();
+        this.channel = FileChannel.open(journal, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.channel.position(this.channel.size());
+
+        return end - cut;
+    }
+
+    // waits for a task run by the committer
+    private static <T> T await(CompletableFuture<T> result) throws IOException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the journal");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+
+            throw new IOException(e.getCause());
+        }
+    }
+
+    // writes the appends with a single gathering write, forces them and completes their futures
+    private void commit(List<Append> batch) {
+        if (this.failed) {
+            for (Append a : batch) {
+                a.durable.completeExceptionally(new IOException("Journal failed"));
+            }
+
+            return;
+        }
+
+        ByteBuffer[] bufs = new ByteBuffer[batch.size()];
+        long remaining = 0;
+
+        for (int i = 0; i < bufs.length; i++) {
+            bufs[i] = batch.get(i).buf;
+            remaining += bufs[i].remaining();
+        }
+
+        IOException failure = null;
+        long start = -1;
+
+        try {
+            start = this.channel.position();
+
+            while (remaining > 0) {
+                remaining -= this.channel.write(bufs);
+            }
+
+            this.channel.force(false);
+        } catch (IOException e) {
+            System.out.println("[ERROR]: Can't commit to the journal");
+            e.printStackTrace();
+            failure = e;
+
+            this.fail(start);
+        }
+
+        // counted before completing the futures, so that their waiters see the group
+        this.batches.incrementAndGet();
+        this.appends.addAndGet(batch.size());
+        this.maxBatchSize.accumulateAndGet(batch.size(), Math::max);
+
+        for (Append a : batch) {
+            if (failure == null) {
+                a.durable.complete(null);
+            } else {
+                a.durable.completeExceptionally(failure);
+            }
+        }
+    }
+
+    // cuts the group partially written from given position, -1 if unknown, and rejects the next appends
+    private void fail(long start) {
+        this.failed = true;
+
+        if (start < 0) {
+            return;
+        }
+
+        try {
+            this.channel.truncate(start);
+            this.channel.position(start);
+        } catch (IOException e) {
+            System.out.println("[ERROR]: Can't cut the journal to " + start + " bytes");
+            e.printStackTrace();
+        }
+    }
+
+    // adds the records of the members not yet in the journal
+    private void memberRecords(Records records, Project p) throws IOException {
+        List<String> members = p.getMembers();
+        int from = this.members.getOrDefault(p.getName(), 0);
+
+        writeMembers(records, p.getName(), members, from);
+
+        this.members.put(p.getName(), Math.max(from, members.size()));
+    }
+
+    // adds the records of the card's transitions not yet in the journal
+    private void cardRecords(Records records, String projectName, Card c) throws IOException {
+        Map<String, Integer> cards = this.transitions.computeIfAbsent(projectName, name -> new HashMap<>());
+        int from = cards.getOrDefault(c.getName(), 0);
+        int size = writeTransitions(records, projectName, c, from);
+
+        cards.put(c.getName(), Math.max(from, size));
+    }
+
+    // adds the records rebuilding the whole project
+    private static void snapshotRecords(Records records, Project p) throws IOException {
+        records.start(PROJECT_CREATED, p.getName());
+        writeString(records.out, p.getChatIp());
+        records.end();
+
+        writeMembers(records, p.getName(), p.getMembers(), 0);
+
+        for (String cardName : p.getCards()) {
+            try {
+                writeTransitions(records, p.getName(), p.getCard(cardName), 0);
+            } catch (CardNotFoundException e) {
+                // impossible to arrive in this block
+            }
+        }
+    }
+
+    // adds the records of the members from given index on
+    private static void writeMembers(Records records, String projectName, List<String> members, int from)
+            throws IOException {
+
+        for (int i = from; i < members.size(); i++) {
+            records.start(MEMBER_ADDED, projectName);
+            writeString(records.out, members.get(i));
+            records.end();
+        }
+    }
+
+    // adds the records of the card's transitions from given index on, returns the number of transitions
+    private static int writeTransitions(Records records, String projectName, Card c, int from) throws IOException {
+        List<CardState> history = c.getHistory();
+        List<Long> times = c.getTimes();
+        List<String> actors = c.getActors();
+
+        for (int i = from; i < history.size(); i++) {
+            records.start(CARD_TRANSITION, projectName);
+            writeString(records.out, c.getName());
+            records.out.writeInt(i);
+            records.out.writeByte(history.get(i).ordinal());
+            records.out.writeLong(times.get(i));
+            writeString(records.out, actors.get(i));
+
+            if (i == 0) {
+                writeString(records.out, c.getDescription());
+            }
+
+            records.end();
+        }
+
+        return history.size();
+    }
+
+    // queues the records for the next group commit
+    private CompletableFuture<Void> append(Records records) {
+        if (records.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        Append a = new Append(ByteBuffer.wrap(records.toByteArray()));
+
+        if (this.closed) {
+            a.durable.completeExceptionally(new IOException("Journal closed"));
+        } else if (this.failed) {
+            a.durable.completeExceptionally(new IOException("Journal failed"));
+        } else {
+            this.queue.add(a);
+        }
+
+        return a.durable;
+    }
+
+    // rebuilds the projects from the snapshot and the journal's records,
+    // discarding the records after the first not valid
+    private List<Project> replay() throws IOException {
+        Map<String, Replayed> projects = new LinkedHashMap<>();
+        Path snapshot = Paths.get(this.path + ".snapshot");
+
+        if (Files.exists(snapshot)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot)))) {
+                this.replayRecords(in, projects);
+            }
+
+            System.out.println("[INFO]: Restored snapshot of " + projects.size() + " projects");
+            this.replayed = 0;
+        }
+
+        // not closed, it would close the channel
+        long valid = this.replayRecords(
+                new DataInputStream(new BufferedInputStream(Channels.newInputStream(this.channel.position(0)))), projects);
+        long records = this.replayed;
+
+        long size = this.channel.size();
+
+        if (valid < size) {
+            System.out.println("[WARN]: Discarding " + (size - valid) + " bytes at the end of the journal");
+            this.channel.truncate(valid);
+        }
+
+        this.channel.position(valid);
+
+        List<Project> restored = new ArrayList<>(projects.size());
+
+        for (Map.Entry<String, Replayed> entry : projects.entrySet()) {
+            Replayed r = entry.getValue();
+            Project p = new Project(entry.getKey(), r.ip);
+
+            p.addMembers(r.members);
+            p.addCards(new ArrayList<>(r.cards.values()));
+
+            Map<String, Integer> cards = new HashMap<>();
+
+            for (Card c : r.cards.values()) {
+                cards.put(c.getName(), c.getHistory().size());
+            }
+
+            this.members.put(p.getName(), p.getMembers().size());
+            this.transitions.put(p.getName(), cards);
+
+            restored.add(p);
+        }
+
+        System.out.println("[INFO]: Replayed " + records + " journal records, " + restored.size() + " projects");
+
+        return restored;
+    }
+
+    // applies the records up to the first not valid, returns the number of bytes applied
+    private long replayRecords(DataInputStream in, Map<String, Replayed> projects) throws IOException {
+        CRC32 crc = new CRC32();
+        long valid = 0;
+
+        try {
+            while (true) {
+                int length = in.readInt();
+                int checksum = in.readInt();
+
+                if (length <= 0 || length > maxRecordSize) {
+                    break;
+                }
+
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+
+                crc.reset();
+                crc.update(payload, 0, length);
+
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+
+                apply(projects, new DataInputStream(new ByteArrayInputStream(payload)));
+                valid += 8 + length;
+                this.replayed++;
+            }
+        } catch (EOFException e) {
+            // end of the file or record partially written
+        }
+
+        return valid;
+    }
+
+    // applies the record to the projects being rebuilt
+    private static void apply(Map<String, Replayed> projects, DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        String projectName = readString(in);
+        Replayed r = projects.get(projectName);
+
+        switch (type) {
+            case PROJECT_CREATED:
+                // all the changes of a project created again follow this record
+                projects.put(projectName, new Replayed(readString(in)));
+                break;
+
+            case PROJECT_DELETED:
+                projects.remove(projectName);
+                break;
+
+            case MEMBER_ADDED:
+                String member = readString(in);
+
+                if (r != null && !r.members.contains(member)) {
+                    r.members.add(member);
+                }
+                break;
+
+            case CARD_TRANSITION:
+                String name = readString(in);
+                int index = in.readInt();
+                CardState to = states[in.readByte()];
+                long at = in.readLong();
+                String actor = readString(in);
+                String description = index == 0 ? readString(in) : null;
+
+                if (r == null) {
+                    break;
+                }
+
+                Card t = r.cards.get(name);
+
+                if (t == null && index == 0) {
+                    t = new Card();
+                    t.setName(name);
+                    t.setDescription(description);
+                    r.cards.put(name, t);
+                }
+
+                // skipping the transitions already replayed from the snapshot
+                if (t != null && index >= t.getHistory().size()) {
+                    t.updateHistory(to, at, actor);
+                }
+                break;
+
+            default:
+                System.out.println("[WARN]: Unknown journal record " + type);
+        }
+    }
+
+    // writes the UTF-8 bytes of given string preceded by their number, -1 if null
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+
+        if (length < 0) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // records waiting to be committed, or a task to run in the committer
+    private static class Append {
+        private final ByteBuffer buf;
+        private final CompletableFuture<Void> durable;
+        private final Runnable task;
+
+        private Append(ByteBuffer buf) {
+            this.buf = buf;
+            this.durable = new CompletableFuture<>();
+            this.task = null;
+        }
+
+        private Append(Runnable task) {
+            this.buf = null;
+            this.durable = null;
+            this.task = task;
+        }
+    }
+
+    // a project being rebuilt
+    private static class Replayed {
+        private final String ip;
+        private final List<String> members;
+        private final LinkedHashMap<String, Card> cards;
+
+        private Replayed(String ip) {
+            this.ip = ip;
+            this.members = new ArrayList<>();
+            this.cards = new LinkedHashMap<>();
+        }
+    }
+
+    // records written together by a single append
+    private static class Records {
+        private final ByteArrayOutputStream bytes;
+        private final ByteArrayOutputStream payload;
+        private final DataOutputStream out;
+        private final CRC32 crc;
+
+        private Records() {
+            this.bytes = new ByteArrayOutputStream();
+            this.payload = new ByteArrayOutputStream();
+            this.out = new DataOutputStream(this.payload);
+            this.crc = new CRC32();
+        }
+
+        // starts a record, its fields are written into out
+        private void start(byte type, String projectName) throws IOException {
+            this.payload.reset();
+            this.out.writeByte(type);
+            writeString(this.out, projectName);
+        }
+
+        // frames the record started last
+        private void end() throws IOException {
+            byte[] payload = this.payload.toByteArray();
+
+            this.crc.reset();
+            this.crc.update(payload, 0, payload.length);
+
+            DataOutputStream frame = new DataOutputStream(this.bytes);
+            frame.writeInt(payload.length);
+            frame.writeInt((int) this.crc.getValue());
+            frame.write(payload);
+        }
+
+        private boolean isEmpty() {
+            return this.bytes.size() == 0;
+        }
+
+        private byte[] toByteArray() {
+            return this.bytes.toByteArray();
+        }
+    }
+}
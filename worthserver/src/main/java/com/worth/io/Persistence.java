@@ -0,0 +1,105 @@
+package com.worth.io;
+
+import com.worth.components.Card;
+import com.worth.components.Project;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Persistence saves the projects' changes and restores the projects at startup.
+ * Changes of the same project are saved by a single thread at a time, in order.
+ * Each change returns the future completed when the change is durable.
+ * The projects added and the projects whose members changed are copies taken
+ * when the change was committed, the cards' changes use only the project's name
+ */
+public interface Persistence {
+
+    /**
+     * Returns the projects saved previously
+     *
+     * @return the projects saved previously
+     */
+    List<Project> restoreProjects();
+
+    /**
+     * Passes each project saved previously to given consumer
+     *
+     * @param consumer receives the restored projects, possibly called concurrently by many threads
+     */
+    default void restoreProjects(Consumer<Project> consumer) {
+        this.restoreProjects().forEach(consumer);
+    }
+
+    /**
+     * Saves a new project with its members and cards
+     *
+     * @param p the project
+     * @return the future completed when the change is durable
+     */
+    CompletableFuture<Void> addProject(Project p);
+
+    /**
+     * Deletes a project
+     *
+     * @param p the project
+     * @return the future completed when the change is durable
+     */
+    CompletableFuture<Void> delProject(Project p);
+
+    /**
+     * Saves the project's members
+     *
+     * @param p the project
+     * @return the future completed when the change is durable
+     */
+    CompletableFuture<Void> updateMembers(Project p);
+
+    /**
+     * Saves a card added or moved
+     *
+     * @param p the project containing the card
+     * @param c the card as committed
+     * @return the future completed when the change is durable
+     */
+    CompletableFuture<Void> updateCard(Project p, Card c);
+
+    /**
+     * Saves many cards added or moved
+     *
+     * @param p the project containing the cards
+     * @param cards the cards as committed
+     * @return the future completed when the change is durable
+     */
+    CompletableFuture<Void> updateCards(Project p, List<Card> cards);
+
+    /**
+     * Saves a snapshot of the projects, so that the changes it contains are no more
+     * needed to restore them. Does nothing if the projects' state is already saved as is
+     *
+     * @param projects returns a copy of the projects, each one consistent
+     * @throws IOException if the snapshot can't be saved
+     */
+    default void snapshot(Supplier<List<Project>> projects) throws IOException {
+        // nothing to compact
+    }
+
+    /**
+     * Returns the storage's metrics, by name
+     *
+     * @return the storage's metrics, empty if it has none
+     */
+    default Map<String, Number> getMetrics() {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Saves the pending changes and releases the resources
+     */
+    void close();
+}
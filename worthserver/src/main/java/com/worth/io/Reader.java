@@ -1,19 +1,31 @@
 package com.worth.io;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.worth.components.Card;
 import com.worth.components.Project;
 import com.worth.components.User;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Scanner;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 public class Reader {
+    private static final String projectsDir = "db/projects";
+
+    // immutable and thread safe, shared by the threads restoring the projects
+    private static final ObjectReader membersReader = new ObjectMapper().readerFor(String[].class);
+    private static final ObjectReader cardReader = new ObjectMapper().readerFor(Card.class);
 
     /**
      * Returns the users list saved previously into filesystem
@@ -52,36 +64,74 @@ public class Reader {
      * @return the projects list saved previously into filesystem
      */
     public static List<Project> restoreProjects() {
-        String projectsDir = "db/projects";
+        Queue<Project> projects = new ConcurrentLinkedQueue<>();
 
-        ArrayList<Project> projectList = new ArrayList<>();
-        File dir = new File(projectsDir);
-        File[] directoryListing = dir.listFiles();
+        restoreProjects(projects::add);
 
-        if (directoryListing != null) {
+        return new ArrayList<>(projects);
+    }
+
+    /**
+     * Restores the projects saved previously into filesystem, reading the projects'
+     * directories in parallel and passing each project to given consumer as soon as
+     * it has been read. Logs the progress and the throughput of the restore
+     *
+     * @param consumer receives the restored projects, called concurrently by many threads
+     */
+    public static void restoreProjects(Consumer<Project> consumer) {
+        File[] directoryListing = new File(projectsDir).listFiles();
+
+        if (directoryListing == null) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        int total = directoryListing.length;
 
-            // each directory contains meta info of project Object
-            // inside .meta directory
-            // each file inside projDir directory is a jackson serialized Card object
-            for (File projDir : directoryListing) {
+        // logging the progress each tenth of the projects if there are many
+        int step = total >= 1000 ? total / 10 : Integer.MAX_VALUE;
 
-                // creating project instance
-                String ip = getProjIp(projDir);
-                Project p = new Project(projDir.getName(), ip);
+        AtomicInteger restored = new AtomicInteger();
+        AtomicLong cards = new AtomicLong();
 
-                // adding members to project
-                List<String> members = getProjMembers(projDir);
-                p.addMembers(members);
+        // each directory contains meta info of project Object
+        // inside .meta directory
+        // each file inside projDir directory is a jackson serialized Card object
+        Arrays.stream(directoryListing).parallel().forEach(projDir -> {
+            Project p = restoreProject(projDir);
 
-                // adding cards to project
-                List<Card> cards = getProjCards(projDir);
-                p.addCards(cards);
+            consumer.accept(p);
+            cards.addAndGet(p.getCards().size());
 
-                projectList.add(p);
+            int n = restored.incrementAndGet();
+
+            if (n % step == 0) {
+                System.out.println("[INFO]: Restored " + n + "/" + total + " projects");
             }
-        }
+        });
+
+        long millis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        System.out.println("[INFO]: Restored " + total + " projects and " + cards.get() + " cards in "
+                + millis + " ms (" + (cards.get() * 1000 / millis) + " cards/s)");
+    }
 
-        return projectList;
+    // reads a project's directory
+    private static Project restoreProject(File projDir) {
+
+        // creating project instance
+        String ip = getProjIp(projDir);
+        Project p = new Project(projDir.getName(), ip);
+
+        // adding members to project
+        List<String> members = getProjMembers(projDir);
+        p.addMembers(members);
+
+        // adding cards to project
+        List<Card> cards = getProjCards(projDir);
+        p.addCards(cards);
+
+        return p;
     }
 
     private static String getProjIp(File projDir) {
@@ -89,8 +139,8 @@ public class Reader {
         String ip = null;
 
         try {
-            ip = new Scanner(ipFile).nextLine();
-        } catch (FileNotFoundException e) {
+            ip = new String(Files.readAllBytes(ipFile.toPath()), StandardCharsets.UTF_8).trim();
+        } catch (IOException e) {
             e.printStackTrace();
         }
 
@@ -103,7 +153,7 @@ public class Reader {
 
         // deserializing project members name list
         try {
-            members = Arrays.asList(new ObjectMapper().readValue(membersFile, String[].class));
+            members = Arrays.asList(membersReader.<String[]>readValue(membersFile));
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -125,7 +175,7 @@ public class Reader {
 
                     // deserializing card file
                     try {
-                        cards.add(new ObjectMapper().readValue(cardFile, Card.class));
+                        cards.add(cardReader.readValue(cardFile));
                     } catch (IOException e) {
                         e.printStackTrace();
                     }
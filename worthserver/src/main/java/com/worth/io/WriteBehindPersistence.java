@@ -0,0 +1,414 @@
+package com.worth.io;
+
+import com.worth.components.Card;
+import com.worth.components.Project;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * WriteBehindPersistence saves the projects as FilePersistence does, but asynchronously:
+ * a change only marks the project, its members or the card as dirty and a flusher thread
+ * writes the latest state of each dirty entity at a fixed interval. A card changed many
+ * times within an interval is written once, a project created and deleted within an
+ * interval is never written. The changes are considered durable as soon as they are marked,
+ * so the changes of the last interval are lost by a crash; close() writes all of them
+ */
+public class WriteBehindPersistence implements Persistence, Runnable {
+    public static final long defaultIntervalMillis = 1000;
+
+    private final long intervalMillis;
+    private final Thread flusher;
+
+    // guards dirty, pendingSince and closed, wakes the flusher when closed
+    private final ReentrantLock lock;
+    private final Condition wakeup;
+
+    // dirty entities by project's name, in the order they have been dirtied
+    private Map<String, Dirty> dirty;
+
+    // nanoTime of the oldest change not yet written, of the ones being written, 0 if none
+    private long pendingSince;
+    private volatile long flushingSince;
+    private boolean closed;
+
+    // serializes the flushes of the flusher and of close()
+    private final Object flushLock;
+
+    // changes received, entities written, flushes, duration of the last flush
+    private long changes;
+    private volatile long writes;
+    private volatile long flushes;
+    private volatile long lastFlushMillis;
+
+    /**
+     * Creates a write behind persistence flushing at the default interval
+     */
+    public WriteBehindPersistence() {
+        this(defaultIntervalMillis);
+    }
+
+    /**
+     * Creates a write behind persistence and starts its flusher thread
+     *
+     * @param intervalMillis the time between two flushes
+     */
+    public WriteBehindPersistence(long intervalMillis) {
+        this.intervalMillis = Math.max(1, intervalMillis);
+        this.lock = new ReentrantLock();
+        this.wakeup = this.lock.newCondition();
+        this.dirty = new LinkedHashMap<>();
+        this.flushLock = new Object();
+
+        this.flusher = new Thread(this, "write-behind-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    @Override
+    public List<Project> restoreProjects() {
+        return Reader.restoreProjects();
+    }
+
+    @Override
+    public void restoreProjects(Consumer<Project> consumer) {
+        Reader.restoreProjects(consumer);
+    }
+
+    @Override
+    public CompletableFuture<Void> addProject(Project p) {
+        this.lock.lock();
+
+        try {
+            Dirty previous = this.dirty.get(p.getName());
+            Dirty d = new Dirty(p);
+
+            // a project with the same name deleted but not yet written must be deleted first
+            d.deleted = previous != null && previous.deleted;
+            d.created = true;
+
+            this.mark(p.getName(), d);
+        } finally {
+            this.lock.unlock();
+        }
+
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> delProject(Project p) {
+        this.lock.lock();
+
+        try {
+            Dirty previous = this.dirty.get(p.getName());
+
+            if (previous != null && previous.created && !previous.deleted) {
+                // never written, nothing to delete
+                this.dirty.remove(p.getName());
+                this.changes++;
+            } else {
+                Dirty d = new Dirty(p);
+                d.deleted = true;
+
+                this.mark(p.getName(), d);
+            }
+        } finally {
+            this.lock.unlock();
+        }
+
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> updateMembers(Project p) {
+        this.lock.lock();
+
+        try {
+            // the latest copy of the project is written, a created project is written with its members
+            Dirty d = this.entry(p);
+            d.project = p;
+            d.members = true;
+        } finally {
+            this.lock.unlock();
+        }
+
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> updateCard(Project p, Card c) {
+        this.lock.lock();
+
+        try {
+            // only the latest state of the card is kept
+            this.entry(p).cards.put(c.getName(), c);
+        } finally {
+            this.lock.unlock();
+        }
+
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> updateCards(Project p, List<Card> cards) {
+        this.lock.lock();
+
+        try {
+            Dirty d = this.entry(p);
+
+            for (Card c : cards) {
+                d.cards.put(c.getName(), c);
+            }
+        } finally {
+            this.lock.unlock();
+        }
+
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Returns the number of dirty entities waiting to be written,
+     * counting each project to create or delete, each members list and each card
+     *
+     * @return the number of dirty entities waiting to be written
+     */
+    public int getQueueDepth() {
+        this.lock.lock();
+
+        try {
+            int depth = 0;
+
+            for (Dirty d : this.dirty.values()) {
+                depth += d.size();
+            }
+
+            return depth;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns how long the oldest change not yet written has been waiting,
+     * the maximum amount of changes lost by a crash
+     *
+     * @return the age in milliseconds of the oldest change not yet written, 0 if none
+     */
+    public long getFlushLag() {
+        long oldest;
+
+        this.lock.lock();
+
+        try {
+            oldest = this.pendingSince;
+        } finally {
+            this.lock.unlock();
+        }
+
+        // the changes being written are older than the pending ones
+        long flushing = this.flushingSince;
+
+        if (flushing != 0) {
+            oldest = flushing;
+        }
+
+        return oldest == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldest);
+    }
+
+    /**
+     * Returns the flusher's metrics: the dirty entities waiting (queueDepth), the age in
+     * milliseconds of the oldest change waiting (flushLag), the changes received (changes),
+     * the entities written (writes), the flushes done (flushes) and the duration in milliseconds
+     * of the last flush (lastFlush). The changes saved by coalescing are changes - writes
+     *
+     * @return the flusher's metrics
+     */
+    @Override
+    public Map<String, Number> getMetrics() {
+        long changes;
+
+        this.lock.lock();
+
+        try {
+            changes = this.changes;
+        } finally {
+            this.lock.unlock();
+        }
+
+        Map<String, Number> metrics = new LinkedHashMap<>();
+
+        metrics.put("queueDepth", this.getQueueDepth());
+        metrics.put("flushLag", this.getFlushLag());
+        metrics.put("changes", changes);
+        metrics.put("writes", this.writes);
+        metrics.put("flushes", this.flushes);
+        metrics.put("lastFlush", this.lastFlushMillis);
+
+        return metrics;
+    }
+
+    /**
+     * Writes the latest state of the entities dirtied so far
+     */
+    public void flush() {
+        synchronized (this.flushLock) {
+            Map<String, Dirty> batch;
+
+            this.lock.lock();
+
+            try {
+                if (this.dirty.isEmpty()) {
+                    return;
+                }
+
+                batch = this.dirty;
+                this.flushingSince = this.pendingSince;
+                this.dirty = new LinkedHashMap<>();
+                this.pendingSince = 0;
+            } finally {
+                this.lock.unlock();
+            }
+
+            long start = System.nanoTime();
+            long written = 0;
+
+            for (Dirty d : batch.values()) {
+                written += d.size();
+
+                try {
+                    d.write();
+                } catch (RuntimeException e) {
+                    System.out.println("[ERROR]: Changes of project " + d.project.getName() + " not saved");
+                    e.printStackTrace();
+                }
+            }
+
+            this.writes += written;
+            this.flushes++;
+            this.lastFlushMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            this.flushingSince = 0;
+        }
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            this.lock.lock();
+
+            try {
+                if (!this.closed) {
+                    this.wakeup.await(this.intervalMillis, TimeUnit.MILLISECONDS);
+                }
+
+                if (this.closed) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                this.lock.unlock();
+            }
+
+            this.flush();
+        }
+    }
+
+    @Override
+    public void close() {
+        this.lock.lock();
+
+        try {
+            this.closed = true;
+            this.wakeup.signal();
+        } finally {
+            this.lock.unlock();
+        }
+
+        try {
+            this.flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        this.flush();
+    }
+
+    // returns the dirty entities of given project, marking it dirty
+    private Dirty entry(Project p) {
+        Dirty d = this.dirty.get(p.getName());
+
+        // a project created again always replaces the entry, see addProject
+        if (d == null) {
+            d = new Dirty(p);
+            this.dirty.put(p.getName(), d);
+        }
+
+        this.changed();
+
+        return d;
+    }
+
+    // replaces the dirty entities of a project, called holding the lock
+    private void mark(String projectName, Dirty d) {
+        this.dirty.put(projectName, d);
+        this.changed();
+    }
+
+    // counts a change, called holding the lock
+    private void changed() {
+        this.changes++;
+
+        if (this.pendingSince == 0) {
+            this.pendingSince = System.nanoTime();
+        }
+    }
+
+    // the entities of a project to write at the next flush
+    private static class Dirty {
+        // the project as of its creation or of its last members' change
+        private Project project;
+
+        // the directory must be deleted, then created if created is set
+        private boolean deleted;
+        private boolean created;
+        private boolean members;
+        private final Map<String, Card> cards;
+
+        private Dirty(Project project) {
+            this.project = project;
+            this.cards = new LinkedHashMap<>();
+        }
+
+        // number of entities to write, a created project is written with its members
+        private int size() {
+            return (this.deleted ? 1 : 0) + (this.created ? 1 : 0) + (this.members && !this.created ? 1 : 0)
+                    + this.cards.size();
+        }
+
+        private void write() {
+            if (this.deleted) {
+                Writer.delProject(this.project);
+            }
+
+            if (this.created) {
+                // writes the members and the cards of the copy too
+                Writer.addProject(this.project);
+            } else if (this.deleted) {
+                return;
+            } else if (this.members) {
+                Writer.updateMembers(this.project);
+            }
+
+            if (!this.cards.isEmpty()) {
+                Writer.updateCards(this.project, new ArrayList<>(this.cards.values()));
+            }
+        }
+    }
+}
@@ -9,6 +9,7 @@ import com.worth.exceptions.card.CardNotFoundException;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.List;
 
 public class Writer {
     private static final String projectsDir = "db/projects";
@@ -151,6 +152,32 @@ public class Writer {
         }
     }
 
+    /**
+     * Adds or updates the files corresponding given cards inside project's folder,
+     * as updateCard but sharing the serializer between all the cards
+     *
+     * @param p the project containing the cards
+     * @param cards the cards
+     */
+    public static void updateCards(Project p, List<Card> cards) {
+
+        // opening project folder
+        String projDirName = projectsDir + "/" + p.getName();
+        File projDir = new File(projDirName);
+
+        ObjectMapper mapper = new ObjectMapper();
+
+        for (Card c : cards) {
+
+            // writing card c to file, creating it if doesn't exist
+            try {
+                mapper.writeValue(new File(projDir, c.getName()), c);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
     /**
      * Creates new file inside users folder representing given user
      *
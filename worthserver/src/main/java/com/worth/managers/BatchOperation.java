@@ -0,0 +1,85 @@
+package com.worth.managers;
+
+/**
+ * BatchOperation implements a single card operation of a batch,
+ * used for serialization/deserialization of batch requests
+ */
+public class BatchOperation {
+    public static final String ADD_CARD = "ADD-CARD";
+    public static final String MOVE_CARD = "MOVE-CARD";
+
+    private String op;
+    private String card;
+    private String description;
+    private String to;
+
+    public BatchOperation() {
+    }
+
+    /**
+     * Creates an operation of given type on given card
+     *
+     * @param op the operation's type (ADD-CARD or MOVE-CARD)
+     * @param card the card's name
+     * @param description the card's description, used by ADD-CARD
+     * @param to the destination list, used by MOVE-CARD
+     */
+    public BatchOperation(String op, String card, String description, String to) {
+        this.op = op;
+        this.card = card;
+        this.description = description;
+        this.to = to;
+    }
+
+    /**
+     * Returns the operation's type
+     *
+     * @return the operation's type
+     */
+    public String getOp() {
+        return this.op;
+    }
+
+    /**
+     * Returns the card's name
+     *
+     * @return the card's name
+     */
+    public String getCard() {
+        return this.card;
+    }
+
+    /**
+     * Returns the card's description
+     *
+     * @return the card's description
+     */
+    public String getDescription() {
+        return this.description;
+    }
+
+    /**
+     * Returns the destination list
+     *
+     * @return the destination list
+     */
+    public String getTo() {
+        return this.to;
+    }
+
+    public void setOp(String op) {
+        this.op = op;
+    }
+
+    public void setCard(String card) {
+        this.card = card;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public void setTo(String to) {
+        this.to = to;
+    }
+}
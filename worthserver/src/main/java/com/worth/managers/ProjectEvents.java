@@ -0,0 +1,162 @@
+package com.worth.managers;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * ProjectEvents implements the pipeline running the side effects of the projects' changes,
+ * as the filesystem updates, the callbacks and the chat messages, after the changes are
+ * committed in memory and the project's lock is released.
+ * Each project is bound to one of few single thread workers, so the events of a project
+ * run in the order they have been published, while different projects proceed in parallel.
+ * An event saves a change and, once the change is durable, queues its notifications
+ * to the project's notifier and completes the change's future, without waiting for them.
+ * The notifiers are single thread too, so the slow clients of a project never delay
+ * the saves queued behind its notifications. A change not saved is never notified
+ */
+public class ProjectEvents {
+    private final ExecutorService[] workers;
+    private final ExecutorService[] notifiers;
+
+    /**
+     * Creates a pipeline with given number of workers
+     *
+     * @param n the number of workers
+     */
+    public ProjectEvents(int n) {
+        this.workers = new ExecutorService[n];
+        this.notifiers = new ExecutorService[n];
+
+        for (int i = 0; i < n; i++) {
+            this.workers[i] = newWorker("project-events-" + i);
+            this.notifiers[i] = newWorker("project-notifier-" + i);
+        }
+    }
+
+    // returns a single thread executor running a daemon thread with given name
+    private static ExecutorService newWorker(String name) {
+        return Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Publishes an event of given project, to be run after the events
+     * of the same project previously published
+     *
+     * @param projectName the project's name
+     * @param save saves the change, returning the future completed when the change is durable
+     * @param notify notifies the change to the clients once durable, not run if saving fails
+     * @return the future completed when the change is durable,
+     *         completed exceptionally if saving it fails
+     */
+    public CompletableFuture<Void> publish(String projectName, Supplier<CompletableFuture<Void>> save, Runnable notify) {
+        CompletableFuture<Void> durable = new CompletableFuture<>();
+        int i = Math.floorMod(projectName.hashCode(), this.workers.length);
+        ExecutorService worker = this.workers[i];
+        ExecutorService notifier = this.notifiers[i];
+
+        worker.execute(() -> {
+            CompletableFuture<Void> saved;
+
+            try {
+                saved = save.get();
+            } catch (RuntimeException e) {
+                saved = new CompletableFuture<>();
+                saved.completeExceptionally(e);
+            }
+
+            saved.whenComplete((v, e) -> {
+                if (e != null) {
+                    System.out.println("[ERROR]: Change of project " + projectName + " not saved");
+                    e.printStackTrace();
+                    durable.completeExceptionally(e);
+                    return;
+                }
+
+                // queued before completing the future, so that a flush afterwards waits for it
+                try {
+                    notifier.execute(() -> notify(projectName, notify));
+                } catch (RejectedExecutionException r) {
+                    // closing, the notification is run by the thread saving the change
+                    notify(projectName, notify);
+                }
+
+                durable.complete(null);
+            });
+        });
+
+        return durable;
+    }
+
+    // runs the notifications of a change, logging their failure
+    private static void notify(String projectName, Runnable notify) {
+        try {
+            notify.run();
+        } catch (RuntimeException e) {
+            System.out.println("[ERROR]: Notification of project " + projectName + " failed");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Waits until all the events published so far have been run
+     */
+    public void flush() {
+        // the saves first, as they queue the notifications
+        flush(this.workers);
+        flush(this.notifiers);
+    }
+
+    // waits until the tasks queued so far to given executors have been run
+    private static void flush(ExecutorService[] executors) {
+        Future<?>[] pending = new Future<?>[executors.length];
+
+        for (int i = 0; i < executors.length; i++) {
+            pending[i] = executors[i].submit(() -> {});
+        }
+
+        try {
+            for (Future<?> f : pending) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // impossible to arrive in this block
+        }
+    }
+
+    /**
+     * Runs the events published so far and stops the workers
+     */
+    public void close() {
+        // the saves first, as they queue the notifications
+        close(this.workers);
+        close(this.notifiers);
+    }
+
+    // runs the tasks queued so far to given executors and stops them
+    private static void close(ExecutorService[] executors) {
+        for (ExecutorService executor : executors) {
+            executor.shutdown();
+        }
+
+        try {
+            for (ExecutorService executor : executors) {
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
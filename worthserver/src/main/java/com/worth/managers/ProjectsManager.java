@@ -1,37 +1,124 @@
 package com.worth.managers;
 
+import com.worth.chat.Announcer;
+import com.worth.chat.ChatIpAllocator;
 import com.worth.components.Card;
 import com.worth.components.CardState;
+import com.worth.components.FlowStats;
 import com.worth.components.Project;
 import com.worth.exceptions.*;
 import com.worth.exceptions.card.CardAlreadyExistsException;
 import com.worth.exceptions.card.CardNotFoundException;
+import com.worth.exceptions.card.CardVersionMismatchException;
 import com.worth.exceptions.card.IllegalCardMovementException;
 import com.worth.exceptions.card.InvalidCardStateException;
+import com.worth.exceptions.project.ChatIpExhaustedException;
 import com.worth.exceptions.project.ProjectAlreadyExistsException;
 import com.worth.exceptions.project.ProjectNotFoundException;
 import com.worth.exceptions.user.UserAlreadyMemberException;
-import com.worth.io.Writer;
+import com.worth.io.FilePersistence;
+import com.worth.io.Persistence;
 import com.worth.rmi.callback.CallbackServer;
 
 import java.io.IOException;
-import java.net.*;
 import java.util.*;
-
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ProjectsManager executes the operations on the projects.
+ * Each project is guarded by its own lock, so operations on different projects
+ * run concurrently. Changes hold the project's write lock, reads run optimistically
+ * without locking and are retried holding the read lock only if a change overlapped them.
+ * Creating and cancelling a project also take the registry lock, keeping the
+ * projects' names and the chats' ips consistent.
+ * The registry lock is always taken before a project's lock.
+ * The filesystem updates, the callbacks and the chat messages don't run holding
+ * the locks, each change publishes them as an event run afterwards by ProjectEvents.
+ * A change returns once saved, after releasing the locks, so that changes of
+ * concurrent clients can be forced to disk together
+ */
 public class ProjectsManager {
-    private final HashMap<String, Project> projects;
-    private final ArrayList<String> usedIPs;
+    public static final int chatPort = 6662;
+
+    private final ConcurrentHashMap<String, Project> projects;
+
+    // projects of each user
+    private final ConcurrentHashMap<String, Set<Project>> userProjects;
+
+    private final ChatIpAllocator chatIps;
+    private final Persistence persistence;
     private final CallbackServer callback;
+    private final ProjectEvents events;
+    private final Announcer announcer;
+
+    // explicit locks instead of monitors, so that sessions running
+    // on virtual threads don't pin their carrier while waiting
+    private final ReentrantLock registryLock;
 
     public ProjectsManager(List<Project> projects, CallbackServer callback) {
+        this(projects, callback, new ChatIpAllocator());
+    }
 
-        this.projects = new HashMap<>();
-        this.usedIPs = new ArrayList<>();
+    /**
+     * Creates a manager of given projects assigning the chats' ips with given allocator
+     *
+     * @param projects the restored projects
+     * @param callback the callback server notifying the clients
+     * @param chatIps the allocator of the chats' ips
+     */
+    public ProjectsManager(List<Project> projects, CallbackServer callback, ChatIpAllocator chatIps) {
+        this(projects, callback, chatIps, new FilePersistence());
+    }
+
+    /**
+     * Creates a manager of given projects saving their changes with given persistence
+     *
+     * @param projects the restored projects
+     * @param callback the callback server notifying the clients
+     * @param chatIps the allocator of the chats' ips
+     * @param persistence the persistence saving the projects' changes
+     */
+    public ProjectsManager(List<Project> projects, CallbackServer callback, ChatIpAllocator chatIps,
+                           Persistence persistence) {
+
+        this.registryLock = new ReentrantLock();
+
+        this.projects = new ConcurrentHashMap<>();
+        this.userProjects = new ConcurrentHashMap<>();
+        this.chatIps = chatIps;
+        this.persistence = persistence;
         this.callback = callback;
+        this.events = new ProjectEvents(Runtime.getRuntime().availableProcessors());
+        this.announcer = new Announcer(chatPort, 1024, true);
 
         for (Project p : projects) {
+            this.restore(p);
+        }
+    }
+
+    /**
+     * Adds a project restored from the storage, safe to call concurrently
+     * by the threads restoring the projects
+     *
+     * @param p the restored project
+     */
+    public void restore(Project p) {
+
+        this.registryLock.lock();
+
+        try {
             this.projects.put(p.getName(), p);
-            this.usedIPs.add(p.getChatIp());
+            this.chatIps.reserve(p.getChatIp());
+        } finally {
+            this.registryLock.unlock();
+        }
+
+        for (String member : p.getMembers()) {
+            this.index(member, p);
         }
     }
 
@@ -41,32 +128,53 @@ public class ProjectsManager {
      * @param projectName the project's name
      * @param user the project's member
      * @throws ProjectAlreadyExistsException if a project with the same name already exists
+     * @throws ChatIpExhaustedException if there are no more ips for the project's chat
+     * @throws StorageException if the project can't be saved
      */
-    public synchronized void createProject(String projectName, String user) throws ProjectAlreadyExistsException {
+    public void createProject(String projectName, String user)
+            throws ProjectAlreadyExistsException, ChatIpExhaustedException, StorageException {
+
+        CompletableFuture<Void> durable;
 
-        String ip = this.generateIP();
-        Project p = new Project(projectName, ip);
+        this.registryLock.lock();
 
         try {
-            p.addMember(user);
-        } catch (UserAlreadyMemberException e) {
-            // impossible to arrive in this block
-        }
+            if (this.projects.containsKey(projectName)) {
+                throw new ProjectAlreadyExistsException("Project " + projectName + " already exists");
+            }
 
-        /*
-         * putIfAbsent returns null if there is no mapping for the key or
-         * the value associated to the key if there is a mapping
-         */
-        if (this.projects.putIfAbsent(projectName, p) != null) {
-            throw new ProjectAlreadyExistsException("Project " + projectName + " already exists");
-        }
+            String ip = this.chatIps.allocate();
+            Project p = new Project(projectName, ip);
 
-        this.usedIPs.add(ip);
+            try {
+                p.addMember(user);
+            } catch (UserAlreadyMemberException e) {
+                // impossible to arrive in this block
+            }
 
-        // notifies to the user the project's ip
-        this.callback.notifyProjectIp(user, p.getName(), p.getChatIp());
+            // saved as copied before registering it, the events run when other changes can be made
+            Project saved = copy(p);
 
-        Writer.addProject(p);
+            /*
+             * putIfAbsent returns null if there is no mapping for the key or
+             * the value associated to the key if there is a mapping
+             */
+            if (this.projects.putIfAbsent(projectName, p) != null) {
+                this.chatIps.free(ip);
+                throw new ProjectAlreadyExistsException("Project " + projectName + " already exists");
+            }
+
+            this.index(user, p);
+
+            durable = this.events.publish(projectName, () -> this.persistence.addProject(saved), () -> {
+                // notifies to the user the project's ip
+                this.callback.notifyProjectIp(user, projectName, ip);
+            });
+        } finally {
+            this.registryLock.unlock();
+        }
+
+        this.awaitDurable(durable);
     }
 
     /**
@@ -76,38 +184,52 @@ public class ProjectsManager {
      * @param user the user requesting the remove
      * @throws ProjectNotFoundException if there isn't a project with given name
      * @throws OperationNotAllowedException if the project doesn't have given user as member
+     * @throws StorageException if the remove can't be saved
      */
-    public synchronized void cancelProject(String projectName, String user)
-            throws ProjectNotFoundException, OperationNotAllowedException {
+    public void cancelProject(String projectName, String user)
+            throws ProjectNotFoundException, OperationNotAllowedException, StorageException {
 
-        if (!this.projects.containsKey(projectName)) {
-            throw new ProjectNotFoundException("Project " + projectName + " doesn't exist");
-        }
+        CompletableFuture<Void> durable;
 
-        Project p = this.projects.get(projectName);
+        this.registryLock.lock();
 
-        if (!p.isMember(user)) {
-            throw new OperationNotAllowedException("User " + user + " is not a member of project " + projectName);
-        }
+        try {
+            Project p = this.acquire(projectName, user, true);
 
-        if (!p.isFinished()) {
-            throw new OperationNotAllowedException("Project " + projectName + " has some cards not in done list");
-        }
+            try {
+                if (!p.isFinished()) {
+                    throw new OperationNotAllowedException("Project " + projectName + " has some cards not in done list");
+                }
 
-        this.projects.remove(projectName);
+                this.projects.remove(projectName);
 
-        // removing project's ip from used ips
-        String ip = p.getChatIp();
-        this.usedIPs.remove(ip);
+                for (String member : p.getMembers()) {
+                    this.unindex(member, p);
+                }
 
-        // removing project from filesystem
-        Writer.delProject(p);
+                // removing project's ip from used ips
+                String ip = p.getChatIp();
+                this.chatIps.free(ip);
 
-        // sending message into project's multicast chat
-        this.sendMsg(user, "deleted project", p.getChatIp());
+                List<String> members = p.getMembers();
+
+                // removing project from storage
+                durable = this.events.publish(projectName, () -> this.persistence.delProject(p), () -> {
+                    // sending message into project's multicast chat
+                    this.sendMsg(user, "deleted project", ip);
+                    this.announcer.forget(ip);
+
+                    // notifies to the project's members the project's deletion
+                    this.callback.notifyDeletedProject(members, projectName);
+                });
+            } finally {
+                this.release(p, true);
+            }
+        } finally {
+            this.registryLock.unlock();
+        }
 
-        // notifies to the project's members the project's ip
-        this.callback.notifyDeletedProject(p.getMembers(), p.getName());
+        this.awaitDurable(durable);
     }
 
     /**
@@ -120,31 +242,35 @@ public class ProjectsManager {
      * @throws ProjectNotFoundException if there isn't a project with given name
      * @throws OperationNotAllowedException if the project doesn't have given user as member
      * @throws CardAlreadyExistsException if cards already exists in the project
+     * @throws StorageException if the card can't be saved
      */
-    public synchronized void addCard(String projectName, String cardName, String description, String user)
-            throws ProjectNotFoundException, OperationNotAllowedException, CardAlreadyExistsException {
+    public void addCard(String projectName, String cardName, String description, String user)
+            throws ProjectNotFoundException, OperationNotAllowedException, CardAlreadyExistsException,
+            StorageException {
 
-        if (!this.projects.containsKey(projectName)) {
-            throw new ProjectNotFoundException("Project " + projectName + " doesn't exist");
-        }
-
-        Project p = this.projects.get(projectName);
-
-        if (!p.isMember(user)) {
-            throw new OperationNotAllowedException("User " + user + " is not a member of project " + projectName);
-        }
+        CompletableFuture<Void> durable = null;
+        Project p = this.acquire(projectName, user, true);
 
-        p.addCard(cardName, description);
-
-        // adding card to filesystem
         try {
-            Writer.updateCard(p, p.getCard(cardName));
-        } catch (CardNotFoundException e) {
-            // impossible to arrive in this block
+            p.addCard(cardName, description, user);
+
+            try {
+                // copy of the card as committed
+                Card c = p.getCard(cardName);
+
+                // adding card to storage
+                durable = this.events.publish(projectName, () -> this.persistence.updateCard(p, c), () -> {
+                    // sending message to into project's multicast chat
+                    this.sendMsg(user, "added card " + cardName, p.getChatIp());
+                });
+            } catch (CardNotFoundException e) {
+                // impossible to arrive in this block
+            }
+        } finally {
+            this.release(p, true);
         }
 
-        // sending message to into project's multicast chat
-        this.sendMsg(user, "added card " + cardName, p.getChatIp());
+        this.awaitDurable(durable);
     }
 
     /**
@@ -158,20 +284,10 @@ public class ProjectsManager {
      * @throws OperationNotAllowedException if user is not a project's member
      * @throws CardNotFoundException if card with given name doesn't exist in project
      */
-    public synchronized Card showCard(String projectName, String cardName, String user)
+    public Card showCard(String projectName, String cardName, String user)
             throws ProjectNotFoundException, OperationNotAllowedException, CardNotFoundException {
 
-        if (!this.projects.containsKey(projectName)) {
-            throw new ProjectNotFoundException("Project " + projectName + " doesn't exist");
-        }
-
-        Project p = this.projects.get(projectName);
-
-        if (!p.isMember(user)) {
-            throw new OperationNotAllowedException("User " + user + " is not a member of project " + projectName);
-        }
-
-        return p.getCard(cardName);
+        return this.read(projectName, user, p -> p.getCard(cardName));
     }
 
     /**
@@ -183,64 +299,179 @@ public class ProjectsManager {
      * @throws ProjectNotFoundException if project doesn't exist
      * @throws OperationNotAllowedException if user is not a project's member
      */
-    public synchronized List<String> showCards(String projectName, String user)
+    public List<String> showCards(String projectName, String user)
             throws ProjectNotFoundException, OperationNotAllowedException {
 
-        if (!this.projects.containsKey(projectName)) {
-            throw new ProjectNotFoundException("Project " + projectName + " doesn't exist");
-        }
+        return this.read(projectName, user, p -> p.getCards());
+    }
 
-        Project p = this.projects.get(projectName);
+    /**
+     * Moves a card to given position, updating it's history
+     *
+     * @param projectName the project's name
+     * @param cardName the card to move
+     * @param dst the movement's destination
+     * @param user the user requesting the action
+     * @throws ProjectNotFoundException if project doesn't exist
+     * @throws OperationNotAllowedException if user is not a project's member
+     * @throws CardNotFoundException if card with given name doesn't exist in given project
+     * @throws IllegalCardMovementException if movement in given destination is not permitted
+     * @throws InvalidCardStateException if destination card's state is invalid (= null)
+     * @throws StorageException if the card's move can't be saved
+     */
+    public void moveCard(String projectName, String cardName, CardState dst, String user)
+            throws ProjectNotFoundException, OperationNotAllowedException, CardNotFoundException, IllegalCardMovementException, InvalidCardStateException, StorageException {
 
-        if (!p.isMember(user)) {
-            throw new OperationNotAllowedException("User " + user + " is not a member of project " + projectName);
+        try {
+            this.moveCard(projectName, cardName, dst, user, Card.ANY_VERSION);
+        } catch (CardVersionMismatchException e) {
+            // impossible to arrive in this block
         }
-
-        return p.getCards();
     }
 
     /**
-     * Moves a card to given position, updating it's history
+     * Moves a card to given position, updating it's history, only if the card has
+     * given version. A mismatch is detected before waiting for the project's lock
      *
      * @param projectName the project's name
      * @param cardName the card to move
      * @param dst the movement's destination
      * @param user the user requesting the action
+     * @param expectedVersion the card's expected version or Card.ANY_VERSION
      * @throws ProjectNotFoundException if project doesn't exist
      * @throws OperationNotAllowedException if user is not a project's member
      * @throws CardNotFoundException if card with given name doesn't exist in given project
      * @throws IllegalCardMovementException if movement in given destination is not permitted
      * @throws InvalidCardStateException if destination card's state is invalid (= null)
+     * @throws CardVersionMismatchException if the card's version is not the expected one
+     * @throws StorageException if the card's move can't be saved
      */
-    public synchronized void moveCard(String projectName, String cardName, CardState dst, String user)
-            throws ProjectNotFoundException, OperationNotAllowedException, CardNotFoundException, IllegalCardMovementException, InvalidCardStateException {
+    public void moveCard(String projectName, String cardName, CardState dst, String user, long expectedVersion)
+            throws ProjectNotFoundException, OperationNotAllowedException, CardNotFoundException,
+            IllegalCardMovementException, InvalidCardStateException, CardVersionMismatchException, StorageException {
 
         if (dst == null) {
             throw new InvalidCardStateException("Invalid card state");
         }
 
-        if (!this.projects.containsKey(projectName)) {
-            throw new ProjectNotFoundException("Project " + projectName + " doesn't exist");
+        if (expectedVersion != Card.ANY_VERSION) {
+            this.read(projectName, user, p -> {
+                p.checkCardVersion(cardName, expectedVersion);
+                return null;
+            });
         }
 
-        Project p = this.projects.get(projectName);
+        CompletableFuture<Void> durable = null;
+        Project p = this.acquire(projectName, user, true);
 
-        if (!p.isMember(user)) {
-            throw new OperationNotAllowedException("User " + user + " is not a member of project " + projectName);
+        try {
+            p.moveCard(cardName, dst, user, expectedVersion);
+
+            try {
+                // copy of the card as committed
+                Card c = p.getCard(cardName);
+
+                // adding card's movement to storage
+                durable = this.events.publish(projectName, () -> this.persistence.updateCard(p, c), () -> {
+                    // sending message into project's multicast chat
+                    this.sendMsg(user, "moved card " + cardName + " into " + dst, p.getChatIp());
+                });
+            } catch (CardNotFoundException e) {
+                e.printStackTrace();
+            }
+        } finally {
+            this.release(p, true);
         }
 
-        p.moveCard(cardName, dst);
+        this.awaitDurable(durable);
+    }
+
+    /**
+     * Executes many card operations on a project with a single permission check,
+     * a single filesystem update and a single chat message.
+     * Each operation is executed independently, the failure of one doesn't stop the next ones.
+     * An operation without the card's name, or adding a card without description,
+     * fails with an IllegalArgumentException
+     *
+     * @param projectName the project's name
+     * @param operations the operations to execute in order
+     * @param user the user requesting the action
+     * @return for each operation null if executed successfully, the reason of the failure otherwise
+     * @throws ProjectNotFoundException if project doesn't exist
+     * @throws OperationNotAllowedException if user is not a project's member
+     * @throws StorageException if the operations executed can't be saved
+     */
+    public List<Exception> batch(String projectName, List<BatchOperation> operations, String user)
+            throws ProjectNotFoundException, OperationNotAllowedException, StorageException {
+
+        CompletableFuture<Void> durable = null;
+        List<Exception> results = new ArrayList<>(operations.size());
+        Project p = this.acquire(projectName, user, true);
 
-        // adding card's movement to filesystem
         try {
-            Writer.updateCard(p, p.getCard(cardName));
-        } catch (CardNotFoundException e) {
-            e.printStackTrace();
+            LinkedHashSet<String> updated = new LinkedHashSet<>();
+            int added = 0;
+            int moved = 0;
+
+            for (BatchOperation op : operations) {
+
+                try {
+                    // checked before changing the project, a malformed operation changes nothing
+                    checkOperation(op);
+
+                    if (BatchOperation.ADD_CARD.equals(op.getOp())) {
+                        p.addCard(op.getCard(), op.getDescription(), user);
+                        added++;
+
+                    } else if (BatchOperation.MOVE_CARD.equals(op.getOp())) {
+                        CardState dst = op.getTo() == null ? null : CardState.fromString(op.getTo());
+
+                        if (dst == null) {
+                            throw new InvalidCardStateException("Invalid card state");
+                        }
+
+                        p.moveCard(op.getCard(), dst, user);
+                        moved++;
+
+                    } else {
+                        throw new UnsupportedOperationException("Unknown operation " + op.getOp());
+                    }
+
+                    updated.add(op.getCard());
+                    results.add(null);
+
+                } catch (CardAlreadyExistsException | CardNotFoundException | IllegalCardMovementException |
+                        InvalidCardStateException | UnsupportedOperationException | IllegalArgumentException e) {
+                    results.add(e);
+                }
+            }
+
+            if (!updated.isEmpty()) {
+                List<Card> cards = new ArrayList<>(updated.size());
+
+                for (String cardName : updated) {
+                    try {
+                        cards.add(p.getCard(cardName));
+                    } catch (CardNotFoundException e) {
+                        // impossible to arrive in this block
+                    }
+                }
+
+                String msg = "added " + added + " cards and moved " + moved + " cards";
+
+                // writing all updated cards to storage
+                durable = this.events.publish(projectName, () -> this.persistence.updateCards(p, cards), () -> {
+                    // sending a single message into project's multicast chat
+                    this.sendMsg(user, msg, p.getChatIp());
+                });
+            }
+        } finally {
+            this.release(p, true);
         }
 
-        // sending message into project's multicast chat
-        this.sendMsg(user, "moved card " + cardName + " into " + dst, p.getChatIp());
+        this.awaitDurable(durable);
 
+        return results;
     }
 
     /**
@@ -253,20 +484,10 @@ public class ProjectsManager {
      * @throws ProjectNotFoundException if project doesn't exist
      * @throws OperationNotAllowedException if user is not a project's member
      */
-    public synchronized List<CardState> getCardHistory(String projectName, String cardName, String user)
+    public List<CardState> getCardHistory(String projectName, String cardName, String user)
             throws ProjectNotFoundException, OperationNotAllowedException {
 
-        if (!this.projects.containsKey(projectName)) {
-            throw new ProjectNotFoundException("Project " + projectName + " doesn't exist");
-        }
-
-        Project p = this.projects.get(projectName);
-
-        if (!p.isMember(user)) {
-            throw new OperationNotAllowedException("User " + user + " is not a member of project " + projectName);
-        }
-
-        return p.getCardHistory(cardName);
+        return this.read(projectName, user, p -> p.getCardHistory(cardName));
     }
 
     /**
@@ -278,30 +499,34 @@ public class ProjectsManager {
      * @throws ProjectNotFoundException if project doesn't exist
      * @throws OperationNotAllowedException if user is not a project's member
      * @throws UserAlreadyMemberException if the user to add is already a member
+     * @throws StorageException if the new member can't be saved
      */
-    public synchronized void addMember(String projectName, String newMember, String user)
-            throws ProjectNotFoundException, OperationNotAllowedException, UserAlreadyMemberException {
+    public void addMember(String projectName, String newMember, String user)
+            throws ProjectNotFoundException, OperationNotAllowedException, UserAlreadyMemberException,
+            StorageException {
 
-        if (!this.projects.containsKey(projectName)) {
-            throw new ProjectNotFoundException("Project " + projectName + " doesn't exist");
-        }
+        CompletableFuture<Void> durable;
+        Project p = this.acquire(projectName, user, true);
 
-        Project p = this.projects.get(projectName);
-
-        if (!p.isMember(user)) {
-            throw new OperationNotAllowedException("User " + user + " is not a member of project " + projectName);
-        }
+        try {
+            p.addMember(newMember);
+            this.index(newMember, p);
 
-        p.addMember(newMember);
+            // adding project's member in storage, as copied holding the lock
+            Project saved = copy(p);
 
-        // notifies to the new user the project's ip
-        this.callback.notifyProjectIp(newMember, p.getName(), p.getChatIp());
+            durable = this.events.publish(projectName, () -> this.persistence.updateMembers(saved), () -> {
+                // notifies to the new user the project's ip
+                this.callback.notifyProjectIp(newMember, projectName, p.getChatIp());
 
-        // adding project's member in filesystem
-        Writer.updateMembers(p);
+                // sending message to into project's multicast chat
+                this.sendMsg(user, "added " + newMember + " as member", p.getChatIp());
+            });
+        } finally {
+            this.release(p, true);
+        }
 
-        // sending message to into project's multicast chat
-        this.sendMsg(user, "added " + newMember + " as member", p.getChatIp());
+        this.awaitDurable(durable);
     }
 
     /**
@@ -313,20 +538,63 @@ public class ProjectsManager {
      * @throws ProjectNotFoundException if project doesn't exist
      * @throws OperationNotAllowedException if user is not a project's member
      */
-    public synchronized List<String> showMembers(String projectName, String user)
+    public List<String> showMembers(String projectName, String user)
             throws ProjectNotFoundException, OperationNotAllowedException {
 
-        if (!this.projects.containsKey(projectName)) {
-            throw new ProjectNotFoundException("Project " + projectName + " doesn't exist");
-        }
+        return this.read(projectName, user, p -> p.getMembers());
+    }
 
-        Project p = this.projects.get(projectName);
+    /**
+     * Returns the lead times and the cycle times of a project's done cards
+     *
+     * @param projectName the project's name
+     * @param user the user requesting the action
+     * @return the aggregates of the lead times and of the cycle times
+     * @throws ProjectNotFoundException if project doesn't exist
+     * @throws OperationNotAllowedException if user is not a project's member
+     */
+    public Map<String, FlowStats> flowMetrics(String projectName, String user)
+            throws ProjectNotFoundException, OperationNotAllowedException {
 
-        if (!p.isMember(user)) {
-            throw new OperationNotAllowedException("User " + user + " is not a member of project " + projectName);
+        return this.read(projectName, user, Project::getFlowMetrics);
+    }
+
+    /**
+     * Returns the cards of a project added or moved after given version,
+     * or all of them if the changes are no more known
+     *
+     * @param projectName the project's name
+     * @param since the last project's version known by the user
+     * @param user the user requesting the action
+     * @return the project's version as "version", true if all the cards are returned as "full",
+     *         the cards as "cards"
+     * @throws ProjectNotFoundException if project doesn't exist
+     * @throws OperationNotAllowedException if user is not a project's member
+     */
+    public Map<String, Object> sync(String projectName, long since, String user)
+            throws ProjectNotFoundException, OperationNotAllowedException {
+
+        return this.read(projectName, user, p -> p.getChangesSince(since));
+    }
+
+    /**
+     * Returns the number of cards in each state for each project of given user
+     *
+     * @param user the user requesting the action
+     * @return the number of cards in each state by project's name
+     */
+    public Map<String, Map<CardState, Integer>> summary(String user) {
+        Map<String, Map<CardState, Integer>> summary = new TreeMap<>();
+
+        for (Project p : this.listProjectsOf(user)) {
+            try {
+                summary.put(p.getName(), this.read(p.getName(), user, Project::getStateCounts));
+            } catch (ProjectNotFoundException | OperationNotAllowedException e) {
+                // project cancelled meanwhile
+            }
         }
 
-        return p.getMembers();
+        return summary;
     }
 
     /**
@@ -334,7 +602,7 @@ public class ProjectsManager {
      *
      * @return the projects list
      */
-    public synchronized List<String> listProjects() {
+    public List<String> listProjects() {
 
         Set<String> projectsEnum = this.projects.keySet();
 
@@ -346,65 +614,258 @@ public class ProjectsManager {
      *
      * @return all projects of given user
      */
-    public synchronized List<Project> listProjectsOf(String user) {
+    public List<Project> listProjectsOf(String user) {
 
-        ArrayList<Project> projects = new ArrayList<>();
+        // user is null if not logged in
+        Set<Project> projects = user == null ? null : this.userProjects.get(user);
 
-        for (Project p : this.projects.values()) {
-            if (p.isMember(user)) {
-                projects.add(p);
-            }
+        return projects == null ? new ArrayList<>() : new ArrayList<>(projects);
+    }
+
+    /**
+     * Returns the number of chats' ips in use, the fraction of the ips' range they take,
+     * the allocations failed because the range was exhausted and the chat messages
+     * dropped because the announcer's queue was full
+     *
+     * @return the chats' metrics, by name
+     */
+    public Map<String, Number> chatMetrics() {
+
+        this.registryLock.lock();
+
+        try {
+            Map<String, Number> metrics = new LinkedHashMap<>();
+            metrics.put("used", this.chatIps.getUsed());
+            metrics.put("capacity", this.chatIps.getCapacity());
+            metrics.put("utilization", this.chatIps.getUtilization());
+            metrics.put("exhaustions", this.chatIps.getExhaustions());
+            metrics.put("droppedMessages", this.announcer.getDropped());
+
+            return metrics;
+        } finally {
+            this.registryLock.unlock();
         }
+    }
 
-        return projects;
+    /**
+     * Returns the metrics of the storage saving the projects' changes
+     *
+     * @return the storage's metrics, by name, empty if it has none
+     */
+    public Map<String, Number> storageMetrics() {
+        return this.persistence.getMetrics();
     }
 
-    private void sendMsg(String user, String action, String chatIp) {
-        InetAddress ia = null;
-        MulticastSocket ms;
+    /**
+     * Saves a snapshot of all the projects, letting the storage discard the changes it contains.
+     * Each project is copied on its own, optimistically as reads do, so the changes
+     * of the projects go on while the snapshot is taken
+     *
+     * @throws IOException if the snapshot can't be saved
+     */
+    public void snapshot() throws IOException {
+        this.persistence.snapshot(this::copyProjects);
+    }
 
-        try {
-            ms = new MulticastSocket(6662);
-            ms.setReuseAddress(true);
-        } catch (IOException e) {
-            e.printStackTrace();
+    /**
+     * Waits until the filesystem updates, the callbacks and the chat messages
+     * of the changes made so far have been executed
+     */
+    public void flush() {
+        this.events.flush();
+    }
+
+    /**
+     * Executes the pending filesystem updates, callbacks and chat messages
+     * and stops the workers executing them, the manager must not be used afterwards
+     */
+    public void close() {
+        this.events.close();
+        this.announcer.close();
+        this.persistence.close();
+    }
+
+    // waits until the change is saved, the failures are already logged by the events' workers.
+    // A change not saved is still committed in memory, but it's reported to the client
+    private void awaitDurable(CompletableFuture<Void> durable) throws StorageException {
+        if (durable == null) {
             return;
         }
 
         try {
-            ia = InetAddress.getByName(chatIp);
-        } catch (UnknownHostException e) {
-            e.printStackTrace();
+            durable.join();
+        } catch (CompletionException | CancellationException e) {
+            throw new StorageException("Change committed but not saved: "
+                    + (e.getCause() != null ? e.getCause().getMessage() : e.getMessage()));
         }
+    }
 
-        byte[] msg = ("[WORTH]: " + user + " " + action).getBytes();
-        DatagramPacket dp = new DatagramPacket(msg, msg.length, ia, 6662);
+    // adds given project to the projects of given user
+    private void index(String user, Project p) {
+        this.userProjects.compute(user, (u, projects) -> {
+            if (projects == null) {
+                projects = ConcurrentHashMap.newKeySet();
+            }
 
-        try {
-            ms.send(dp);
-        } catch (IOException e) {
-            e.printStackTrace();
+            projects.add(p);
+
+            return projects;
+        });
+    }
+
+    // removes given project from the projects of given user
+    private void unindex(String user, Project p) {
+        this.userProjects.computeIfPresent(user, (u, projects) -> {
+            projects.remove(p);
+
+            return projects.isEmpty() ? null : projects;
+        });
+    }
+
+    // checks that the batch operation has the fields it needs
+    private static void checkOperation(BatchOperation op) {
+        if (op == null) {
+            throw new IllegalArgumentException("Malformed operation");
+        }
+
+        if (op.getCard() == null || op.getCard().isEmpty()) {
+            throw new IllegalArgumentException("Missing card's name");
+        }
+
+        if (BatchOperation.ADD_CARD.equals(op.getOp()) && op.getDescription() == null) {
+            throw new IllegalArgumentException("Missing description of card " + op.getCard());
+        }
+    }
+
+    // returns a consistent copy of each registered project
+    private List<Project> copyProjects() {
+        List<Project> copies = new ArrayList<>(this.projects.size());
+
+        for (Project p : this.projects.values()) {
+            Project copy = null;
+            long stamp = p.getLock().tryOptimisticRead();
+
+            if (stamp != 0) {
+                try {
+                    copy = copy(p);
+                } catch (RuntimeException e) {
+                    // inconsistent state, copied again holding the lock
+                }
+
+                if (!p.getLock().validate(stamp)) {
+                    copy = null;
+                }
+            }
+
+            if (copy == null) {
+                p.getLock().asReadLock().lock();
+
+                try {
+                    copy = copy(p);
+                } finally {
+                    p.getLock().asReadLock().unlock();
+                }
+            }
+
+            copies.add(copy);
+        }
+
+        return copies;
+    }
+
+    private static Project copy(Project p) {
+        Project copy = new Project(p.getName(), p.getChatIp());
+        List<Card> cards = new ArrayList<>();
+
+        for (String cardName : p.getCards()) {
+            try {
+                cards.add(p.getCard(cardName));
+            } catch (CardNotFoundException e) {
+                // impossible to arrive in this block, cards are never removed
+            }
+        }
+
+        copy.addMembers(p.getMembers());
+        copy.addCards(cards);
+
+        return copy;
+    }
+
+    // executes given read on the project with given name checking that given user is a member,
+    // first without locking and then, if a change overlapped the read, holding the read lock
+    private <T, E extends Exception> T read(String projectName, String user, Read<T, E> read)
+            throws ProjectNotFoundException, OperationNotAllowedException, E {
+
+        Project p = this.projects.get(projectName);
+
+        if (p == null) {
+            throw new ProjectNotFoundException("Project " + projectName + " doesn't exist");
         }
 
-        ms.close();
+        long stamp = p.getLock().tryOptimisticRead();
+
+        if (stamp != 0) {
+            try {
+                if (p.isMember(user)) {
+                    T result = read.apply(p);
+
+                    if (p.getLock().validate(stamp) && this.projects.get(projectName) == p) {
+                        return result;
+                    }
+                }
+            } catch (Exception e) {
+                // inconsistent state or a failure, both checked again holding the lock
+            }
+        }
+
+        p = this.acquire(projectName, user, false);
+
+        try {
+            return read.apply(p);
+        } finally {
+            this.release(p, false);
+        }
     }
 
-    private synchronized String generateIP() {
-        Random r = new Random();
+    // returns the registered project with given name locked for reading or writing,
+    // checking that given user is a member
+    private Project acquire(String projectName, String user, boolean exclusive)
+            throws ProjectNotFoundException, OperationNotAllowedException {
 
-        String ip = (r.nextInt((239 - 224) + 1) + 224) + "." +
-                r.nextInt(256) + "." +
-                r.nextInt(256) + "." +
-                r.nextInt(256);
+        Project p = this.projects.get(projectName);
 
-        while (this.usedIPs.contains(ip)) {
-            ip = (r.nextInt((239 - 224) + 1) + 224) + "." +
-                    r.nextInt(256) + "." +
-                    r.nextInt(256) + "." +
-                    r.nextInt(256);
+        if (p == null) {
+            throw new ProjectNotFoundException("Project " + projectName + " doesn't exist");
+        }
+
+        (exclusive ? p.getLock().asWriteLock() : p.getLock().asReadLock()).lock();
+
+        // the project could have been cancelled while waiting
+        if (this.projects.get(projectName) != p) {
+            this.release(p, exclusive);
+            throw new ProjectNotFoundException("Project " + projectName + " doesn't exist");
+        }
+
+        if (!p.isMember(user)) {
+            this.release(p, exclusive);
+            throw new OperationNotAllowedException("User " + user + " is not a member of project " + projectName);
         }
 
-        return ip;
+        return p;
+    }
+
+    private void release(Project p, boolean exclusive) {
+        (exclusive ? p.getLock().asWriteLock() : p.getLock().asReadLock()).unlock();
+    }
+
+    // a read executed on a project
+    private interface Read<T, E extends Exception> {
+        T apply(Project p) throws E;
+    }
+
+    // queues a message for the project's multicast chat
+    private void sendMsg(String user, String action, String chatIp) {
+        this.announcer.announce(chatIp, "[WORTH]: " + user + " " + action);
     }
 
 }
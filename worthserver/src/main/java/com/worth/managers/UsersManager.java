@@ -12,13 +12,20 @@ import com.worth.rmi.callback.CallbackServer;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class UsersManager {
     private final HashMap<String, User> users;
     private final CallbackServer callback;
 
+    // explicit lock instead of a monitor, so that sessions running
+    // on virtual threads don't pin their carrier while waiting
+    private final ReentrantLock lock;
+
     public UsersManager(List<User> users, CallbackServer callback) {
 
+        this.lock = new ReentrantLock();
+
         this.users = new HashMap<>();
 
         for (User u : users) {
@@ -37,28 +44,34 @@ public class UsersManager {
      * @throws UserNotFoundException if user doesn't exist
      * @throws WrongPasswordException if password is not the same as user's password
      */
-    public synchronized void login(String userName, String password)
+    public void login(String userName, String password)
             throws UserAlreadyLoggedInException, UserNotFoundException, WrongPasswordException {
 
-        if (!this.users.containsKey(userName)) {
-            throw new UserNotFoundException("User " + userName + " is not registered");
-        }
+        this.lock.lock();
 
-        User u = this.users.get(userName);
+        try {
+            if (!this.users.containsKey(userName)) {
+                throw new UserNotFoundException("User " + userName + " is not registered");
+            }
 
-        if (u.isOnline()) {
-            throw new UserAlreadyLoggedInException("User " + userName + " is already logged in");
-        }
+            User u = this.users.get(userName);
 
-        if (!u.checkPassword(password)) {
-            throw new WrongPasswordException("Wrong password");
-        }
+            if (u.isOnline()) {
+                throw new UserAlreadyLoggedInException("User " + userName + " is already logged in");
+            }
+
+            if (!u.checkPassword(password)) {
+                throw new WrongPasswordException("Wrong password");
+            }
 
-        // setting user status to online
-        u.setStatus(true);
+            // setting user status to online
+            u.setStatus(true);
 
-        // notifying new user state
-        this.callback.newUserStateEvent(userName, true);
+            // notifying new user state
+            this.callback.newUserStateEvent(userName, true);
+        } finally {
+            this.lock.unlock();
+        }
     }
 
     /**
@@ -68,23 +81,29 @@ public class UsersManager {
      * @throws UserAlreadyLoggedOutException if user is already offline
      * @throws UserNotFoundException if user doesn't exist
      */
-    public synchronized void logout(String userName) throws UserAlreadyLoggedOutException, UserNotFoundException {
+    public void logout(String userName) throws UserAlreadyLoggedOutException, UserNotFoundException {
 
-        if (!this.users.containsKey(userName)) {
-            throw new UserNotFoundException("User " + userName + " doesn't exists");
-        }
+        this.lock.lock();
 
-        User u = this.users.get(userName);
+        try {
+            if (!this.users.containsKey(userName)) {
+                throw new UserNotFoundException("User " + userName + " doesn't exists");
+            }
 
-        if (!u.isOnline()) {
-            throw new UserAlreadyLoggedOutException("User " + userName + " is already logged out");
-        }
+            User u = this.users.get(userName);
 
-        // setting user status to offline
-        u.setStatus(false);
+            if (!u.isOnline()) {
+                throw new UserAlreadyLoggedOutException("User " + userName + " is already logged out");
+            }
 
-        // notifying new user state
-        this.callback.newUserStateEvent(userName, false);
+            // setting user status to offline
+            u.setStatus(false);
+
+            // notifying new user state
+            this.callback.newUserStateEvent(userName, false);
+        } finally {
+            this.lock.unlock();
+        }
     }
 
     /**
@@ -94,20 +113,26 @@ public class UsersManager {
      * @param password the user's password
      * @throws UserAlreadyExistsException if user with given username already exists
      */
-    public synchronized void register(String userName, String password) throws UserAlreadyExistsException {
+    public void register(String userName, String password) throws UserAlreadyExistsException {
 
-        if (this.users.containsKey(userName)) {
-            throw new UserAlreadyExistsException("User with username " + userName + " already exists");
-        }
+        this.lock.lock();
+
+        try {
+            if (this.users.containsKey(userName)) {
+                throw new UserAlreadyExistsException("User with username " + userName + " already exists");
+            }
 
-        User u = new User(userName, password);
-        this.users.put(userName, u);
+            User u = new User(userName, password);
+            this.users.put(userName, u);
 
-        // notifying new user state
-        this.callback.newUserStateEvent(userName, false);
+            // notifying new user state
+            this.callback.newUserStateEvent(userName, false);
 
-        // writing user into filesystem
-        Writer.addUser(u);
+            // writing user into filesystem
+            Writer.addUser(u);
+        } finally {
+            this.lock.unlock();
+        }
     }
 
     /**
@@ -115,14 +140,21 @@ public class UsersManager {
      *
      * @return the list of users and the relative status (true=online, false=offline)
      */
-    public synchronized Map<String, Boolean> getUsersList() {
-        HashMap<String, Boolean> map = new HashMap<>();
+    public Map<String, Boolean> getUsersList() {
 
-        for (User u : this.users.values()) {
-            map.put(u.getUserName(), u.isOnline());
-        }
+        this.lock.lock();
+
+        try {
+            HashMap<String, Boolean> map = new HashMap<>();
 
-        return map;
+            for (User u : this.users.values()) {
+                map.put(u.getUserName(), u.isOnline());
+            }
+
+            return map;
+        } finally {
+            this.lock.unlock();
+        }
     }
 
     /**
@@ -131,8 +163,15 @@ public class UsersManager {
      * @param userName the username to check
      * @return true if a user with given username exists, false otherwise
      */
-    public synchronized boolean exists(String userName) {
-        return this.users.containsKey(userName);
+    public boolean exists(String userName) {
+
+        this.lock.lock();
+
+        try {
+            return this.users.containsKey(userName);
+        } finally {
+            this.lock.unlock();
+        }
     }
 
 }
@@ -0,0 +1,347 @@
+package com.worth.nio;
+
+import com.worth.Pipeline;
+import com.worth.Session;
+import com.worth.exceptions.ProtocolException;
+import com.worth.exceptions.user.UserAlreadyLoggedOutException;
+import com.worth.exceptions.user.UserNotFoundException;
+import com.worth.managers.ProjectsManager;
+import com.worth.managers.UsersManager;
+import com.worth.protocol.BinaryCodec;
+import com.worth.protocol.ByteBufferOutputStream;
+import com.worth.protocol.Request;
+import com.worth.protocol.Response;
+import com.worth.protocol.TextCodec;
+import com.worth.protocol.TextParser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Connection implements the text and the binary protocols over a non blocking channel.
+ * Its state is accessed only by the event loop's thread, untagged requests are executed
+ * by the workers one at a time and in order of arrival, tagged ones through the session's pipeline
+ */
+class Connection {
+    private static final int initialBufferSize = 1024;
+    private static final int maxBufferSize = BinaryCodec.maxFrameSize;
+    private static final int maxInFlight = 1024;
+
+    private final SocketChannel channel;
+    private final EventLoop loop;
+    private final ExecutorService workers;
+    private final Session session;
+    private final Pipeline pipeline;
+    private final TextParser parser;
+    private final String address;
+
+    private SelectionKey key;
+    private ByteBuffer in;
+
+    // null until the first byte is received, then tells which protocol the client speaks
+    private Boolean binary;
+
+    // received requests waiting to be executed
+    private final ArrayDeque<Request> pending;
+
+    // responses waiting to be written into the channel
+    private final ArrayDeque<ByteBuffer> out;
+
+    // true while an untagged request is being executed by a worker
+    private boolean busy;
+
+    // number of tagged requests handed to the pipeline and not yet answered
+    private int inFlight;
+
+    // true when the binary protocol's handshake has been completed
+    private boolean handshakeDone;
+
+    // true when the client closed its side of the connection
+    private boolean eof;
+
+    private boolean closed;
+
+    Connection(SocketChannel channel, EventLoop loop, ExecutorService workers,
+               ProjectsManager projects, UsersManager users) {
+
+        this.channel = channel;
+        this.loop = loop;
+        this.workers = workers;
+        this.session = new Session(projects, users);
+        this.pipeline = new Pipeline(this.session, workers, () -> loop.execute(this::close));
+        this.parser = new TextParser();
+        this.address = channel.socket().getInetAddress() + ":" + channel.socket().getPort();
+
+        this.in = ByteBuffer.allocate(initialBufferSize);
+        this.binary = null;
+        this.pending = new ArrayDeque<>();
+        this.out = new ArrayDeque<>();
+        this.busy = false;
+        this.inFlight = 0;
+        this.handshakeDone = false;
+        this.eof = false;
+        this.closed = false;
+    }
+
+    void open(SelectionKey key) {
+        this.key = key;
+        System.out.println("[INFO]: Connected to " + this.address);
+    }
+
+    void onReadable() {
+        int n;
+
+        try {
+            n = this.channel.read(this.in);
+        } catch (IOException e) {
+            n = -1;
+        }
+
+        if (n == -1) {
+            // client crashed
+            System.out.println("[WARN]: Client " + this.address + " crashed");
+
+            this.eof = true;
+            this.key.interestOps(this.key.interestOps() & ~SelectionKey.OP_READ);
+            this.next();
+            return;
+        }
+
+        try {
+            this.decode();
+        } catch (ProtocolException e) {
+            System.out.println("[WARN]: Client " + this.address + " sent a malformed request: " + e.getMessage());
+            this.eof = true;
+            this.key.interestOps(this.key.interestOps() & ~SelectionKey.OP_READ);
+            this.next();
+            return;
+        }
+
+        if (this.closed) {
+            return;
+        }
+
+        if (!this.in.hasRemaining()) {
+
+            if (this.in.capacity() >= maxBufferSize) {
+                System.out.println("[WARN]: Client " + this.address + " sent a too long request");
+                this.close();
+                return;
+            }
+
+            ByteBuffer bigger = ByteBuffer.allocate(this.in.capacity() * 2);
+            this.in.flip();
+            bigger.put(this.in);
+            this.in = bigger;
+        }
+
+        this.next();
+    }
+
+    void onWritable() {
+        try {
+            while (!this.out.isEmpty()) {
+                ByteBuffer buf = this.out.peek();
+                this.channel.write(buf);
+
+                if (buf.hasRemaining()) {
+                    // socket buffer full, waiting for the next writable event
+                    return;
+                }
+
+                this.out.poll();
+            }
+        } catch (IOException e) {
+            this.close();
+            return;
+        }
+
+        this.key.interestOps(this.key.interestOps() & ~SelectionKey.OP_WRITE);
+        this.next();
+    }
+
+    void close() {
+        if (this.closed) {
+            return;
+        }
+
+        this.closed = true;
+
+        if (this.key != null) {
+            this.key.cancel();
+        }
+
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // moves each complete request received into the pending requests
+    private void decode() throws ProtocolException {
+        this.in.flip();
+
+        if (this.binary == null && this.in.hasRemaining()) {
+            this.binary = this.in.get(0) == BinaryCodec.MAGIC;
+        }
+
+        if (this.binary == Boolean.TRUE) {
+            this.decodeFrames();
+        } else {
+            this.splitLines();
+        }
+
+        this.in.compact();
+    }
+
+    private void splitLines() {
+        int start = this.in.position();
+
+        for (int i = start; i < this.in.limit(); i++) {
+            if (this.in.get(i) == '\n') {
+                this.parser.parse(this.in.array(), start, i - start);
+                this.pending.add(this.parser.toRequest());
+                start = i + 1;
+            }
+        }
+
+        this.in.position(start);
+    }
+
+    private void decodeFrames() throws ProtocolException {
+
+        // reading the binary protocol's magic and version, acknowledging them if supported
+        if (!this.handshakeDone) {
+            if (this.in.remaining() < 2) {
+                return;
+            }
+
+            this.in.get(); // magic
+
+            if (this.in.get() != BinaryCodec.VERSION) {
+                throw new ProtocolException("Unsupported protocol version");
+            }
+
+            this.handshakeDone = true;
+            this.out.add(ByteBuffer.wrap(new byte[]{BinaryCodec.MAGIC, BinaryCodec.VERSION}));
+            this.key.interestOps(this.key.interestOps() | SelectionKey.OP_WRITE);
+        }
+
+        Request request;
+
+        while ((request = BinaryCodec.decode(this.in)) != null) {
+            this.pending.add(request);
+        }
+    }
+
+    // executes the pending requests: tagged requests are handed to the pipeline as soon
+    // as they arrive, an untagged request waits for the running ones and for pending writes
+    private void next() {
+
+        while (!this.closed && !this.busy) {
+            Request request = this.pending.peek();
+
+            if (request == null) {
+                if (this.eof && this.inFlight == 0 && this.out.isEmpty()) {
+                    this.busy = true;
+                    this.workers.execute(this::crash);
+                }
+                return;
+            }
+
+            if (request.isTagged()) {
+                if (this.inFlight >= maxInFlight) {
+                    return;
+                }
+
+                this.pending.poll();
+                this.inFlight++;
+                this.pipeline.submit(request, response -> this.reply(response, true));
+                continue;
+            }
+
+            if (this.inFlight > 0 || !this.out.isEmpty()) {
+                return;
+            }
+
+            this.pending.poll();
+
+            // client quit
+            if (request.getOpcode() == Request.QUIT) {
+                this.close();
+                System.out.println("[INFO]: Connection to " + this.address + " closed");
+                return;
+            }
+
+            this.busy = true;
+            this.workers.execute(() -> this.execute(request));
+            return;
+        }
+    }
+
+    // executed by a worker
+    private void execute(Request request) {
+        Response response;
+
+        try {
+            response = this.session.process(request);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            this.loop.execute(this::close);
+            return;
+        }
+
+        this.reply(response, false);
+    }
+
+    // executed by a worker, encodes the response and hands it to the loop
+    private void reply(Response response, boolean pipelined) {
+        ByteBuffer buf;
+
+        try {
+            if (this.binary) {
+                buf = BinaryCodec.encode(response);
+            } else {
+                ByteBufferOutputStream line = new ByteBufferOutputStream(initialBufferSize);
+                TextCodec.write(line, response);
+                buf = line.toBuffer();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            this.loop.execute(this::close);
+            return;
+        }
+
+        this.loop.execute(() -> {
+            if (pipelined) {
+                this.inFlight--;
+            } else {
+                this.busy = false;
+            }
+
+            if (this.closed) {
+                return;
+            }
+
+            this.out.add(buf);
+            this.key.interestOps(this.key.interestOps() | SelectionKey.OP_WRITE);
+            this.onWritable();
+        });
+    }
+
+    // executed by a worker, closing safely
+    private void crash() {
+        try {
+            this.session.close();
+        } catch (UserAlreadyLoggedOutException | UserNotFoundException e) {
+            e.printStackTrace();
+        }
+
+        this.loop.execute(this::close);
+    }
+}
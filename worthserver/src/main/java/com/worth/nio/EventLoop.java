@@ -0,0 +1,106 @@
+package com.worth.nio;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * EventLoop multiplexes a set of connections on a single thread,
+ * every connection state change is executed by the loop's thread
+ */
+class EventLoop implements Runnable {
+    private final Selector selector;
+
+    // tasks submitted by other threads, executed by the loop's thread
+    private final ConcurrentLinkedQueue<Runnable> tasks;
+
+    EventLoop() throws IOException {
+        this.selector = Selector.open();
+        this.tasks = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Executes given task into the loop's thread
+     *
+     * @param task the task to execute
+     */
+    void execute(Runnable task) {
+        this.tasks.add(task);
+        this.selector.wakeup();
+    }
+
+    /**
+     * Registers a newly accepted channel into the loop
+     *
+     * @param channel the accepted channel
+     * @param connection the connection served through the channel
+     */
+    void register(SocketChannel channel, Connection connection) {
+        this.execute(() -> {
+            try {
+                channel.configureBlocking(false);
+                SelectionKey key = channel.register(this.selector, SelectionKey.OP_READ, connection);
+                connection.open(key);
+            } catch (IOException e) {
+                e.printStackTrace();
+                connection.close();
+            }
+        });
+    }
+
+    @Override
+    public void run() {
+
+        try {
+            while (this.selector.isOpen()) {
+                this.selector.select();
+
+                Runnable task;
+                while ((task = this.tasks.poll()) != null) {
+                    task.run();
+                }
+
+                Iterator<SelectionKey> it = this.selector.selectedKeys().iterator();
+
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+
+                    Connection connection = (Connection) key.attachment();
+
+                    try {
+                        if (key.isReadable()) {
+                            connection.onReadable();
+                        }
+
+                        if (key.isValid() && key.isWritable()) {
+                            connection.onWritable();
+                        }
+                    } catch (CancelledKeyException e) {
+                        connection.close();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (ClosedSelectorException e) {
+            // loop closed
+        }
+    }
+
+    /**
+     * Closes the loop's selector, stopping the loop
+     */
+    void close() {
+        try {
+            this.selector.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.worth.nio;
+
+import com.worth.managers.ProjectsManager;
+import com.worth.managers.UsersManager;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * SelectorServer serves clients with a fixed number of threads:
+ * an acceptor, a small set of event loops multiplexing the connections
+ * with a selector and a fixed pool of workers executing the requests
+ */
+public class SelectorServer implements Runnable {
+    private final ProjectsManager projects;
+    private final UsersManager users;
+    private final ServerSocketChannel serverChannel;
+    private final EventLoop[] loops;
+    private final ExecutorService workers;
+
+    /**
+     * Creates the server listening on given port
+     *
+     * @param projects the shared projects manager
+     * @param users the shared users manager
+     * @param port the port to listen on
+     * @param loopsCount the number of event loops threads
+     * @param workersCount the number of threads executing the requests
+     * @throws IOException if the server channel or a selector can't be opened
+     */
+    public SelectorServer(ProjectsManager projects, UsersManager users, int port, int loopsCount, int workersCount)
+            throws IOException {
+
+        this.projects = projects;
+        this.users = users;
+
+        this.serverChannel = ServerSocketChannel.open();
+        this.serverChannel.bind(new InetSocketAddress(port));
+
+        this.loops = new EventLoop[loopsCount];
+        for (int i = 0; i < loopsCount; i++) {
+            this.loops[i] = new EventLoop();
+        }
+
+        this.workers = Executors.newFixedThreadPool(workersCount);
+    }
+
+    /**
+     * Returns the port the server is listening on
+     *
+     * @return the port the server is listening on
+     */
+    public int getPort() {
+        return this.serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Starts the event loops and accepts connections until the server channel is closed
+     */
+    @Override
+    public void run() {
+
+        for (int i = 0; i < this.loops.length; i++) {
+            Thread t = new Thread(this.loops[i], "worth-event-loop-" + i);
+            t.setDaemon(true);
+            t.start();
+        }
+
+        int next = 0;
+
+        // dispatching new incoming connections to the event loops in round robin
+        while (this.serverChannel.isOpen()) {
+            SocketChannel channel;
+
+            try {
+                channel = this.serverChannel.accept();
+            } catch (IOException e) {
+                if (this.serverChannel.isOpen()) {
+                    e.printStackTrace();
+                }
+                continue;
+            }
+
+            EventLoop loop = this.loops[next];
+            next = (next + 1) % this.loops.length;
+
+            loop.register(channel, new Connection(channel, loop, this.workers, this.projects, this.users));
+        }
+    }
+
+    /**
+     * Stops accepting connections and stops the event loops
+     */
+    public void close() {
+        try {
+            this.serverChannel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        for (EventLoop loop : this.loops) {
+            loop.close();
+        }
+
+        this.workers.shutdown();
+    }
+}
@@ -0,0 +1,429 @@
+package com.worth.protocol;
+
+import com.worth.exceptions.ProtocolException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * BinaryCodec implements the length prefixed binary protocol.
+ * A client selects it sending MAGIC followed by VERSION as first bytes of the
+ * connection, the server acknowledges sending back the same two bytes.
+ * Then each message is a frame with the following format:
+ *
+ * frame length (varint) | code (1 byte) | fields count (varint) | fields
+ *
+ * where each field is its length in bytes (varint) followed by its UTF-8 bytes,
+ * the code is the opcode for requests and the response code for responses.
+ * Lengths not known in advance, as the ones of JSON fields serialized while
+ * encoding, are padded to 5 bytes with redundant continuation bits.
+ * Messages tagged with a correlation id start with the TAGGED code followed
+ * by the id (varint) and then by the real code
+ */
+public class BinaryCodec {
+    public static final byte MAGIC = 0;
+    public static final byte VERSION = 1;
+
+    // opcode of the quit request
+    public static final int QUIT = 0xFF;
+
+    // code announcing a correlation id
+    public static final int TAGGED = 0xFE;
+
+    // maximum size of a request's frame, responses aren't limited as the server
+    // doesn't limit the size of the JSON fields it writes
+    public static final int maxFrameSize = 1 << 20;
+
+    private static final int paddedVarintSize = 5;
+
+    /**
+     * Decodes the next request from given buffer, consuming its frame.
+     * If the frame is not complete the buffer is left untouched
+     *
+     * @param buf the buffer in read mode
+     * @return the decoded request or null if the frame is not complete
+     * @throws ProtocolException if the frame is malformed
+     */
+    public static Request decode(ByteBuffer buf) throws ProtocolException {
+        ByteBuffer body = nextFrame(buf, maxFrameSize);
+
+        if (body == null) {
+            return null;
+        }
+
+        return readRequest(body);
+    }
+
+    /**
+     * Decodes the next response from given buffer, consuming its frame.
+     * If the frame is not complete the buffer is left untouched
+     *
+     * @param buf the buffer in read mode
+     * @return the decoded response or null if the frame is not complete
+     * @throws ProtocolException if the frame is malformed
+     */
+    public static Response decodeResponse(ByteBuffer buf) throws ProtocolException {
+        ByteBuffer body = nextFrame(buf, Integer.MAX_VALUE);
+
+        if (body == null) {
+            return null;
+        }
+
+        int id = Request.NO_ID;
+        int code = body.get() & 0xFF;
+
+        if (code == TAGGED) {
+            id = readVarint(body);
+            code = body.get() & 0xFF;
+        }
+
+        Response response = new Response(code, (Object[]) readFields(body));
+
+        return id == Request.NO_ID ? response : response.withId(id);
+    }
+
+    /**
+     * Encodes given response into a frame
+     *
+     * @param response the response to encode
+     * @return the buffer in read mode containing the frame
+     * @throws IOException if a JSON field can't be serialized
+     */
+    public static ByteBuffer encode(Response response) throws IOException {
+        String[] fields = new String[response.size()];
+
+        for (int i = 0; i < fields.length; i++) {
+            Object field = response.value(i);
+
+            if (field instanceof JsonField) {
+                return stream(response);
+            }
+
+            fields[i] = (String) field;
+        }
+
+        return frame(response.getId(), response.getCode(), fields);
+    }
+
+    /**
+     * Encodes given request into a frame
+     *
+     * @param request the request to encode
+     * @return the buffer in read mode containing the frame
+     */
+    public static ByteBuffer encode(Request request) {
+        String[] fields = new String[request.size()];
+
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = request.field(i);
+        }
+
+        return frame(request.getId(), request.getOpcode() == Request.QUIT ? QUIT : request.getOpcode(), fields);
+    }
+
+    /**
+     * Reads the next request from given stream
+     *
+     * @param in the stream
+     * @return the next request or null if the stream ended
+     * @throws IOException if an I/O error occurs
+     * @throws ProtocolException if the frame is malformed
+     */
+    public static Request read(InputStream in) throws IOException, ProtocolException {
+        int length = 0;
+
+        for (int shift = 0; ; shift += 7) {
+            int b = in.read();
+
+            if (b == -1) {
+                return null;
+            }
+
+            if (shift > 28) {
+                throw new ProtocolException("Malformed frame length");
+            }
+
+            length |= (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) {
+                break;
+            }
+        }
+
+        if (length < 1 || length > maxFrameSize) {
+            throw new ProtocolException("Invalid frame length " + length);
+        }
+
+        byte[] frame = in.readNBytes(length);
+
+        if (frame.length < length) {
+            return null;
+        }
+
+        return readRequest(ByteBuffer.wrap(frame));
+    }
+
+    /**
+     * Writes given response into given stream
+     *
+     * @param out the stream
+     * @param response the response to write
+     * @throws IOException if an I/O error occurs
+     */
+    public static void write(OutputStream out, Response response) throws IOException {
+        ByteBuffer buf = encode(response);
+
+        out.write(buf.array(), buf.position(), buf.remaining());
+        out.flush();
+    }
+
+    // returns the body of the next complete frame consuming it, null if not complete,
+    // failing if the frame is longer than given size
+    private static ByteBuffer nextFrame(ByteBuffer buf, int maxSize) throws ProtocolException {
+        int start = buf.position();
+        int length = readVarint(buf);
+
+        if (length == -1) {
+            buf.position(start);
+            return null;
+        }
+
+        if (length < 1 || length > maxSize) {
+            throw new ProtocolException("Invalid frame length " + length);
+        }
+
+        if (buf.remaining() < length) {
+            buf.position(start);
+            return null;
+        }
+
+        ByteBuffer body = buf.slice();
+        body.limit(length);
+        buf.position(buf.position() + length);
+
+        return body;
+    }
+
+    private static Request readRequest(ByteBuffer body) throws ProtocolException {
+        int id = Request.NO_ID;
+        int opcode = body.get() & 0xFF;
+
+        if (opcode == TAGGED) {
+            id = readVarint(body);
+
+            if (id < 0 || !body.hasRemaining()) {
+                throw new ProtocolException("Malformed correlation id");
+            }
+
+            opcode = body.get() & 0xFF;
+        }
+
+        Request request = new Request(opcode == QUIT ? Request.QUIT : opcode, readFields(body));
+
+        return id == Request.NO_ID ? request : request.withId(id);
+    }
+
+    private static String[] readFields(ByteBuffer body) throws ProtocolException {
+        int count = readVarint(body);
+
+        if (count < 0 || count > body.remaining()) {
+            throw new ProtocolException("Invalid fields count");
+        }
+
+        String[] fields = new String[count];
+
+        for (int i = 0; i < count; i++) {
+            int length = readVarint(body);
+
+            if (length < 0 || length > body.remaining()) {
+                throw new ProtocolException("Invalid field length");
+            }
+
+            if (body.hasArray()) {
+                fields[i] = new String(body.array(), body.arrayOffset() + body.position(), length, StandardCharsets.UTF_8);
+                body.position(body.position() + length);
+            } else {
+                byte[] bytes = new byte[length];
+                body.get(bytes);
+                fields[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+        }
+
+        return fields;
+    }
+
+    // encodes a response having JSON fields serializing them directly into the frame
+    private static ByteBuffer stream(Response response) throws IOException {
+        ByteBufferOutputStream out = new ByteBufferOutputStream(1024);
+
+        // frame length, known at the end
+        out.ensure(paddedVarintSize).position(paddedVarintSize);
+
+        if (response.isTagged()) {
+            ByteBuffer buf = out.ensure(1 + varintSize(response.getId()));
+            buf.put((byte) TAGGED);
+            writeVarint(buf, response.getId());
+        }
+
+        ByteBuffer header = out.ensure(1 + varintSize(response.size()));
+        header.put((byte) response.getCode());
+        writeVarint(header, response.size());
+
+        for (int i = 0; i < response.size(); i++) {
+            Object field = response.value(i);
+
+            if (field instanceof JsonField) {
+                int start = out.size();
+                out.ensure(paddedVarintSize).position(start + paddedVarintSize);
+                ((JsonField) field).writeTo(out);
+                writePaddedVarint(out.ensure(0), start, out.size() - start - paddedVarintSize);
+            } else {
+                String s = (String) field;
+                int size = utf8Size(s);
+                ByteBuffer buf = out.ensure(varintSize(size) + size);
+                writeVarint(buf, size);
+                writeUtf8(buf, s);
+            }
+        }
+
+        writePaddedVarint(out.ensure(0), 0, out.size() - paddedVarintSize);
+
+        return out.toBuffer();
+    }
+
+    private static ByteBuffer frame(int id, int code, String[] fields) {
+        int length = 1 + varintSize(fields.length);
+
+        if (id != Request.NO_ID) {
+            length += 1 + varintSize(id);
+        }
+
+        for (String field : fields) {
+            int size = utf8Size(field);
+            length += varintSize(size) + size;
+        }
+
+        ByteBuffer buf = ByteBuffer.allocate(varintSize(length) + length);
+
+        writeVarint(buf, length);
+
+        if (id != Request.NO_ID) {
+            buf.put((byte) TAGGED);
+            writeVarint(buf, id);
+        }
+
+        buf.put((byte) code);
+        writeVarint(buf, fields.length);
+
+        for (String field : fields) {
+            writeVarint(buf, utf8Size(field));
+            writeUtf8(buf, field);
+        }
+
+        return buf.flip();
+    }
+
+    // returns the decoded varint or -1 if buffer ends before the varint
+    private static int readVarint(ByteBuffer buf) throws ProtocolException {
+        int value = 0;
+
+        for (int shift = 0; buf.hasRemaining(); shift += 7) {
+
+            if (shift > 28) {
+                throw new ProtocolException("Malformed varint");
+            }
+
+            byte b = buf.get();
+            value |= (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        return -1;
+    }
+
+    private static void writeVarint(ByteBuffer buf, int value) {
+        while ((value & ~0x7F) != 0) {
+            buf.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+
+        buf.put((byte) value);
+    }
+
+    // writes the varint at given index using exactly paddedVarintSize bytes
+    private static void writePaddedVarint(ByteBuffer buf, int index, int value) {
+        for (int i = 0; i < paddedVarintSize - 1; i++) {
+            buf.put(index + i, (byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+
+        buf.put(index + paddedVarintSize - 1, (byte) value);
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+
+        return size;
+    }
+
+    private static int utf8Size(String s) {
+        int size = 0;
+
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+
+            if (c < 0x80) {
+                size += 1;
+            } else if (c < 0x800) {
+                size += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                size += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                size += 1;
+            } else {
+                size += 3;
+            }
+        }
+
+        return size;
+    }
+
+    // encodes the string directly into the buffer, unpaired surrogates are encoded as '?'
+    private static void writeUtf8(ByteBuffer buf, String s) {
+
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+
+            if (c < 0x80) {
+                buf.put((byte) c);
+            } else if (c < 0x800) {
+                buf.put((byte) (0xC0 | (c >> 6)));
+                buf.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                buf.put((byte) (0xF0 | (cp >> 18)));
+                buf.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                buf.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                buf.put((byte) (0x80 | (cp & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                buf.put((byte) '?');
+            } else {
+                buf.put((byte) (0xE0 | (c >> 12)));
+                buf.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buf.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+}
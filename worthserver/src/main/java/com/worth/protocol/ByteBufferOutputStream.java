@@ -0,0 +1,67 @@
+package com.worth.protocol;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * ByteBufferOutputStream implements a stream writing into a heap buffer
+ * growing as needed, used to encode messages without intermediate copies
+ */
+public class ByteBufferOutputStream extends OutputStream {
+    private ByteBuffer buf;
+
+    /**
+     * Creates a stream with given initial capacity
+     *
+     * @param capacity the initial capacity in bytes
+     */
+    public ByteBufferOutputStream(int capacity) {
+        this.buf = ByteBuffer.allocate(capacity);
+    }
+
+    @Override
+    public void write(int b) {
+        this.ensure(1).put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        this.ensure(len).put(b, off, len);
+    }
+
+    /**
+     * Returns the underlying buffer in write mode with at least given free space,
+     * the caller can put bytes into it directly
+     *
+     * @param n the needed free space in bytes
+     * @return the underlying buffer in write mode
+     */
+    public ByteBuffer ensure(int n) {
+        if (this.buf.remaining() < n) {
+            int capacity = Math.max(this.buf.capacity() * 2, this.buf.position() + n);
+            ByteBuffer bigger = ByteBuffer.allocate(capacity);
+            bigger.put(this.buf.flip());
+            this.buf = bigger;
+        }
+
+        return this.buf;
+    }
+
+    /**
+     * Returns the number of bytes written so far
+     *
+     * @return the number of bytes written so far
+     */
+    public int size() {
+        return this.buf.position();
+    }
+
+    /**
+     * Returns the written bytes, the stream must not be used afterwards
+     *
+     * @return the underlying buffer in read mode
+     */
+    public ByteBuffer toBuffer() {
+        return this.buf.flip();
+    }
+}
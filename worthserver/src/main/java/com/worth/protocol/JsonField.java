@@ -0,0 +1,123 @@
+package com.worth.protocol;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.CharacterEscapes;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JsonField implements a response field holding a value serialized as JSON.
+ * The value is serialized only when the response is written, directly into
+ * the connection's output, using writers shared by all the connections
+ */
+public class JsonField {
+    private static final ObjectMapper mapper = new ObjectMapper()
+            .disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+    private static final JsonFactory factory = mapper.getFactory()
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+            .disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+
+    // writers with the serializers already resolved for the types sent to the clients
+    public static final ObjectWriter STRING_LIST = mapper.writerFor(new TypeReference<List<String>>() {});
+    public static final ObjectWriter STRING_MAP = mapper.writerFor(new TypeReference<Map<String, String>>() {});
+    public static final ObjectWriter BOOLEAN_MAP = mapper.writerFor(new TypeReference<Map<String, Boolean>>() {});
+    public static final ObjectWriter ANY = mapper.writer();
+
+    // escapes % as \u0025, the text protocol's fields separator
+    private static final CharacterEscapes textEscapes = new CharacterEscapes() {
+        private final int[] escapes = CharacterEscapes.standardAsciiEscapesForJSON();
+
+        {
+            this.escapes['%'] = CharacterEscapes.ESCAPE_STANDARD;
+        }
+
+        @Override
+        public int[] getEscapeCodesForAscii() {
+            return this.escapes;
+        }
+
+        @Override
+        public SerializableString getEscapeSequence(int ch) {
+            return null;
+        }
+    };
+
+    private final ObjectWriter writer;
+    private final Object value;
+
+    private JsonField(ObjectWriter writer, Object value) {
+        this.writer = writer;
+        this.value = value;
+    }
+
+    /**
+     * Creates a field serializing given value with given writer
+     *
+     * @param writer one of the shared writers
+     * @param value the value to serialize
+     * @return the field
+     */
+    public static JsonField of(ObjectWriter writer, Object value) {
+        return new JsonField(writer, value);
+    }
+
+    /**
+     * Writes the UTF-8 JSON of the value into given stream, without flushing it
+     *
+     * @param out the stream
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        try (JsonGenerator generator = factory.createGenerator(out)) {
+            this.writer.writeValue(generator, this.value);
+        }
+    }
+
+    /**
+     * Writes the UTF-8 JSON of the value into given stream as a field of
+     * the text protocol, without flushing it
+     *
+     * @param out the stream
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeText(OutputStream out) throws IOException {
+        try (JsonGenerator generator = factory.createGenerator(out)) {
+            generator.setCharacterEscapes(textEscapes);
+            this.writer.writeValue(generator, this.value);
+        }
+    }
+
+    /**
+     * Returns the JSON of the value as a field of the text protocol
+     *
+     * @return the JSON of the value without %
+     */
+    public String toText() {
+        return this.toString().replace("%", "\\u0025");
+    }
+
+    /**
+     * Returns the JSON of the value
+     *
+     * @return the JSON of the value
+     */
+    @Override
+    public String toString() {
+        try {
+            return this.writer.writeValueAsString(this.value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
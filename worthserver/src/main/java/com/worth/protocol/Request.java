@@ -0,0 +1,91 @@
+package com.worth.protocol;
+
+/**
+ * Request implements a decoded client's request, independent from the wire protocol
+ */
+public class Request {
+    // opcode of the request closing the connection
+    public static final int QUIT = -1;
+
+    // opcode of a request that can't be decoded
+    public static final int UNKNOWN = -2;
+
+    // correlation id of untagged requests
+    public static final int NO_ID = -1;
+
+    private final int id;
+    private final int opcode;
+    private final String[] fields;
+
+    /**
+     * Creates a request with given opcode and fields
+     *
+     * @param opcode the operation's code
+     * @param fields the operation's parameters
+     */
+    public Request(int opcode, String... fields) {
+        this(NO_ID, opcode, fields);
+    }
+
+    private Request(int id, int opcode, String[] fields) {
+        this.id = id;
+        this.opcode = opcode;
+        this.fields = fields;
+    }
+
+    /**
+     * Returns a copy of this request tagged with given correlation id
+     *
+     * @param id the correlation id, non negative
+     * @return the tagged copy of this request
+     */
+    public Request withId(int id) {
+        return new Request(id, this.opcode, this.fields);
+    }
+
+    /**
+     * Returns the correlation id of the request
+     *
+     * @return the correlation id or NO_ID if the request is not tagged
+     */
+    public int getId() {
+        return this.id;
+    }
+
+    /**
+     * Checks if the request is tagged with a correlation id
+     *
+     * @return true if the request is tagged, false otherwise
+     */
+    public boolean isTagged() {
+        return this.id != Request.NO_ID;
+    }
+
+    /**
+     * Returns the operation's code
+     *
+     * @return the operation's code
+     */
+    public int getOpcode() {
+        return this.opcode;
+    }
+
+    /**
+     * Returns the i-th parameter of the operation
+     *
+     * @param i the parameter's index
+     * @return the i-th parameter of the operation
+     */
+    public String field(int i) {
+        return this.fields[i];
+    }
+
+    /**
+     * Returns the number of parameters of the operation
+     *
+     * @return the number of parameters of the operation
+     */
+    public int size() {
+        return this.fields.length;
+    }
+}
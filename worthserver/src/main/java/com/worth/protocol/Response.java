@@ -0,0 +1,93 @@
+package com.worth.protocol;
+
+/**
+ * Response implements the result of a request, independent from the wire protocol.
+ * Each field is either a String or a JsonField serialized when the response is written
+ */
+public class Response {
+    private final int id;
+    private final int code;
+    private final Object[] fields;
+
+    /**
+     * Creates a response with given code and fields
+     *
+     * @param code the response's code
+     * @param fields the response's data or message, Strings or JsonFields
+     */
+    public Response(int code, Object... fields) {
+        this(Request.NO_ID, code, fields);
+    }
+
+    private Response(int id, int code, Object[] fields) {
+        this.id = id;
+        this.code = code;
+        this.fields = fields;
+    }
+
+    /**
+     * Returns a copy of this response tagged with given correlation id
+     *
+     * @param id the correlation id, non negative
+     * @return the tagged copy of this response
+     */
+    public Response withId(int id) {
+        return new Response(id, this.code, this.fields);
+    }
+
+    /**
+     * Returns the correlation id of the response
+     *
+     * @return the correlation id or Request.NO_ID if the response is not tagged
+     */
+    public int getId() {
+        return this.id;
+    }
+
+    /**
+     * Checks if the response is tagged with a correlation id
+     *
+     * @return true if the response is tagged, false otherwise
+     */
+    public boolean isTagged() {
+        return this.id != Request.NO_ID;
+    }
+
+    /**
+     * Returns the response's code
+     *
+     * @return the response's code
+     */
+    public int getCode() {
+        return this.code;
+    }
+
+    /**
+     * Returns the i-th field of the response
+     *
+     * @param i the field's index
+     * @return the i-th field of the response, JSON fields are serialized
+     */
+    public String field(int i) {
+        return this.fields[i].toString();
+    }
+
+    /**
+     * Returns the i-th field of the response as it was created
+     *
+     * @param i the field's index
+     * @return the i-th field of the response, a String or a JsonField
+     */
+    public Object value(int i) {
+        return this.fields[i];
+    }
+
+    /**
+     * Returns the number of fields of the response
+     *
+     * @return the number of fields of the response
+     */
+    public int size() {
+        return this.fields.length;
+    }
+}
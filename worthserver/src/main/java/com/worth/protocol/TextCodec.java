@@ -0,0 +1,122 @@
+package com.worth.protocol;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * TextCodec implements the original text protocol where each message is
+ * a line made of the code followed by the fields, separated by %.
+ * A message can be prefixed by #id% where id is a non negative correlation id,
+ * responses to tagged requests carry the same prefix.
+ * Inside the fields of tagged messages a % is escaped as \%, a \ that would be read
+ * as an escape as \\, the untagged ones of the old clients are never escaped.
+ * JSON fields never contain %, written as \u0025 inside JSON strings
+ */
+public class TextCodec {
+    private static final byte[] lineSeparator = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Decodes a request line
+     *
+     * @param line the request line without line terminator
+     * @return the decoded request
+     */
+    public static Request decode(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        TextParser parser = new TextParser();
+
+        parser.parse(bytes, 0, bytes.length);
+
+        return parser.toRequest();
+    }
+
+    /**
+     * Encodes a response line
+     *
+     * @param response the response to encode
+     * @return the response line without line terminator
+     */
+    public static String encode(Response response) {
+        StringBuilder sb = new StringBuilder();
+
+        if (response.isTagged()) {
+            sb.append('#').append(response.getId()).append('%');
+        }
+
+        sb.append(response.getCode());
+
+        for (int i = 0; i < response.size(); i++) {
+            Object field = response.value(i);
+            sb.append('%').append(field instanceof JsonField ? ((JsonField) field).toText() : text(response, (String) field));
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Writes given response line into given stream, JSON fields are
+     * serialized directly into the stream
+     *
+     * @param out the stream
+     * @param response the response to write
+     * @throws IOException if an I/O error occurs
+     */
+    public static void write(OutputStream out, Response response) throws IOException {
+
+        if (response.isTagged()) {
+            writeAscii(out, "#" + response.getId() + "%");
+        }
+
+        writeAscii(out, Integer.toString(response.getCode()));
+
+        for (int i = 0; i < response.size(); i++) {
+            out.write('%');
+
+            Object field = response.value(i);
+
+            if (field instanceof JsonField) {
+                ((JsonField) field).writeText(out);
+            } else {
+                out.write(text(response, (String) field).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        out.write(lineSeparator);
+        out.flush();
+    }
+
+    // returns the field as written in given response, escaped only if tagged
+    private static String text(Response response, String field) {
+        return response.isTagged() ? escape(field) : field;
+    }
+
+    // escapes each % and each \ that would be read as an escape
+    private static String escape(String field) {
+        if (field.indexOf('%') < 0 && field.indexOf('\\') < 0) {
+            return field;
+        }
+
+        StringBuilder sb = new StringBuilder(field.length() + 8);
+
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+
+            if (c == '%') {
+                sb.append('\\');
+            } else if (c == '\\' && (i + 1 == field.length() || field.charAt(i + 1) == '%' || field.charAt(i + 1) == '\\')) {
+                sb.append('\\');
+            }
+
+            sb.append(c);
+        }
+
+        return sb.toString();
+    }
+
+    private static void writeAscii(OutputStream out, String s) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            out.write(s.charAt(i));
+        }
+    }
+}
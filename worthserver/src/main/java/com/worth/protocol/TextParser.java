@@ -0,0 +1,329 @@
+package com.worth.protocol;
+
+import com.worth.exceptions.ProtocolException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * TextParser implements a reusable parser of the text protocol's request lines,
+ * one for each connection. Parsing a line only records the position of its fields,
+ * without allocating, the fields are turned into Strings when the request is built.
+ * Short fields, as the projects', cards' and users' names used as keys by the managers,
+ * are looked up in a small cache so that names repeated across requests are not copied again.
+ * Inside a field of a tagged line \% stands for %, \\ for \ and any other \ for itself,
+ * the untagged lines of the old clients have no escapes
+ */
+public class TextParser {
+    private static final int maxLineLength = BinaryCodec.maxFrameSize;
+    private static final int maxKeyLength = 64;
+    private static final int cacheSize = 256;
+
+    private final String[] cache;
+
+    // field i spans from starts[i] included to ends[i] excluded in line
+    private int[] starts;
+    private int[] ends;
+    private boolean[] escaped;
+
+    private byte[] line;
+    private boolean escapes;
+    private int id;
+    private int opcode;
+    private int count;
+
+    // buffer of read(InputStream), bytes between from and to are read but not parsed
+    private byte[] buf;
+    private int from;
+    private int to;
+
+    public TextParser() {
+        this.cache = new String[cacheSize];
+        this.starts = new int[8];
+        this.ends = new int[8];
+        this.escaped = new boolean[8];
+        this.buf = new byte[1024];
+    }
+
+    /**
+     * Parses given request line, an optional \r before the end is ignored
+     *
+     * @param line the buffer containing the line
+     * @param off the index of the line's first byte
+     * @param len the line's length in bytes, without line terminator
+     */
+    public void parse(byte[] line, int off, int len) {
+        int end = off + len;
+
+        if (end > off && line[end - 1] == '\r') {
+            end--;
+        }
+
+        this.line = line;
+        this.escapes = false;
+        this.id = Request.NO_ID;
+        this.opcode = Request.UNKNOWN;
+        this.count = 0;
+
+        if (end - off == 4 && line[off] == 'q' && line[off + 1] == 'u' && line[off + 2] == 'i' && line[off + 3] == 't') {
+            this.opcode = Request.QUIT;
+            return;
+        }
+
+        int i = off;
+
+        // correlation id
+        if (i < end && line[i] == '#') {
+            int sep = indexOf(line, i + 1, end, false);
+            int id = parseInt(line, i + 1, sep);
+
+            if (id < 0) {
+                return;
+            }
+
+            this.id = id;
+            this.escapes = true;
+            i = sep == end ? end : sep + 1;
+        }
+
+        int sep = indexOf(line, i, end, this.escapes);
+        this.opcode = parseInt(line, i, sep);
+
+        if (this.opcode < 0) {
+            this.opcode = Request.UNKNOWN;
+        }
+
+        // splitting the fields
+        while (sep < end) {
+            i = sep + 1;
+            sep = indexOf(line, i, end, this.escapes);
+            this.add(i, sep);
+        }
+
+        // as String.split, ignoring trailing empty fields
+        while (this.count > 0 && this.starts[this.count - 1] == this.ends[this.count - 1]) {
+            this.count--;
+        }
+    }
+
+    /**
+     * Reads and parses the next request line from given stream
+     *
+     * @param in the stream
+     * @return true if a line has been parsed, false if the stream ended
+     * @throws IOException if an I/O error occurs
+     * @throws ProtocolException if the line is too long
+     */
+    public boolean read(InputStream in) throws IOException, ProtocolException {
+        int scanned = this.from;
+
+        while (true) {
+            for (int i = scanned; i < this.to; i++) {
+                if (this.buf[i] == '\n') {
+                    this.parse(this.buf, this.from, i - this.from);
+                    this.from = i + 1;
+                    return true;
+                }
+            }
+
+            scanned = this.to;
+
+            // making room for the next bytes
+            if (this.to == this.buf.length) {
+                int pending = this.to - this.from;
+
+                if (pending >= maxLineLength) {
+                    throw new ProtocolException("Request line too long");
+                }
+
+                if (pending > this.buf.length / 2) {
+                    this.buf = Arrays.copyOf(this.buf, this.buf.length * 2);
+                }
+
+                System.arraycopy(this.buf, this.from, this.buf, 0, pending);
+                scanned -= this.from;
+                this.from = 0;
+                this.to = pending;
+            }
+
+            int n = in.read(this.buf, this.to, this.buf.length - this.to);
+
+            if (n == -1) {
+                return false;
+            }
+
+            this.to += n;
+        }
+    }
+
+    /**
+     * Returns the correlation id of the parsed line
+     *
+     * @return the correlation id or Request.NO_ID if the line is not tagged
+     */
+    public int getId() {
+        return this.id;
+    }
+
+    /**
+     * Returns the opcode of the parsed line
+     *
+     * @return the opcode, Request.QUIT or Request.UNKNOWN if not valid
+     */
+    public int getOpcode() {
+        return this.opcode;
+    }
+
+    /**
+     * Returns the number of fields of the parsed line
+     *
+     * @return the number of fields of the parsed line
+     */
+    public int size() {
+        return this.count;
+    }
+
+    /**
+     * Returns the i-th field of the parsed line, unescaped
+     *
+     * @param i the field's index
+     * @return the i-th field of the parsed line
+     */
+    public String field(int i) {
+        int start = this.starts[i];
+        int length = this.ends[i] - start;
+
+        if (this.escaped[i]) {
+            return unescape(this.line, start, this.ends[i]);
+        }
+
+        if (length > maxKeyLength) {
+            return new String(this.line, start, length, StandardCharsets.UTF_8);
+        }
+
+        int hash = 0;
+
+        for (int j = start; j < this.ends[i]; j++) {
+            hash = 31 * hash + this.line[j];
+        }
+
+        // two ways cache, the most recent string is in the first slot
+        int slot = (hash ^ (hash >>> 16)) & (cacheSize - 2);
+
+        for (int j = slot; j < slot + 2; j++) {
+            String cached = this.cache[j];
+
+            if (cached != null && matches(cached, this.line, start, length)) {
+                return cached;
+            }
+        }
+
+        String s = new String(this.line, start, length, StandardCharsets.UTF_8);
+        this.cache[slot + 1] = this.cache[slot];
+        this.cache[slot] = s;
+
+        return s;
+    }
+
+    /**
+     * Builds the request of the parsed line
+     *
+     * @return the request of the parsed line
+     */
+    public Request toRequest() {
+        String[] fields = new String[this.count];
+
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = this.field(i);
+        }
+
+        Request request = new Request(this.opcode, fields);
+
+        return this.id == Request.NO_ID ? request : request.withId(this.id);
+    }
+
+    private void add(int start, int end) {
+        if (this.count == this.starts.length) {
+            this.starts = Arrays.copyOf(this.starts, this.count * 2);
+            this.ends = Arrays.copyOf(this.ends, this.count * 2);
+            this.escaped = Arrays.copyOf(this.escaped, this.count * 2);
+        }
+
+        boolean escaped = false;
+
+        for (int i = start; i < end - 1 && this.escapes && !escaped; i++) {
+            escaped = this.line[i] == '\\' && (this.line[i + 1] == '%' || this.line[i + 1] == '\\');
+        }
+
+        this.starts[this.count] = start;
+        this.ends[this.count] = end;
+        this.escaped[this.count] = escaped;
+        this.count++;
+    }
+
+    // returns the index of the next % not escaped, end if there's none
+    private static int indexOf(byte[] line, int from, int end, boolean escapes) {
+        for (int i = from; i < end; i++) {
+            if (line[i] == '%') {
+                return i;
+            }
+
+            if (escapes && line[i] == '\\' && i + 1 < end && (line[i + 1] == '%' || line[i + 1] == '\\')) {
+                i++;
+            }
+        }
+
+        return end;
+    }
+
+    // returns the non negative decimal number between from and end, -1 if not valid
+    private static int parseInt(byte[] line, int from, int end) {
+        if (from == end || end - from > 9) {
+            return -1;
+        }
+
+        int value = 0;
+
+        for (int i = from; i < end; i++) {
+            if (line[i] < '0' || line[i] > '9') {
+                return -1;
+            }
+
+            value = value * 10 + (line[i] - '0');
+        }
+
+        return value;
+    }
+
+    // checks if s is the ASCII string of given bytes, non ASCII strings never match
+    private static boolean matches(String s, byte[] line, int start, int length) {
+        if (s.length() != length) {
+            return false;
+        }
+
+        for (int i = 0; i < length; i++) {
+            if (line[start + i] < 0 || s.charAt(i) != line[start + i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static String unescape(byte[] line, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        int n = 0;
+
+        for (int i = start; i < end; i++) {
+            if (line[i] == '\\' && i + 1 < end && (line[i + 1] == '%' || line[i + 1] == '\\')) {
+                i++;
+            }
+
+            bytes[n++] = line[i];
+        }
+
+        return new String(bytes, 0, n, StandardCharsets.UTF_8);
+    }
+}
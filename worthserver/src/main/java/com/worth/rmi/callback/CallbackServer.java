@@ -5,6 +5,7 @@ import java.rmi.server.RemoteObject;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Implementation of callback interface serverside CallbackServerInterface
@@ -12,8 +13,13 @@ import java.util.concurrent.ConcurrentHashMap;
 public class CallbackServer extends RemoteObject implements CallbackServerInterface {
     private final ConcurrentHashMap<String, ClientEventInterface> subscribedClients;
 
+    // serializes notifications, explicit so that remote calls made
+    // from virtual threads don't pin their carrier
+    private final ReentrantLock lock;
+
     public CallbackServer() {
         subscribedClients = new ConcurrentHashMap<>();
+        lock = new ReentrantLock();
     }
 
     /**
@@ -50,16 +56,23 @@ public class CallbackServer extends RemoteObject implements CallbackServerInterf
      * @param projectName the project's name to notify
      * @param ip the project's ip to notify
      */
-    public synchronized void notifyProjectIp(String userName, String projectName, String ip) {
-        if (!this.subscribedClients.containsKey(userName)) {
-            return;
-        }
+    public void notifyProjectIp(String userName, String projectName, String ip) {
+
+        this.lock.lock();
 
         try {
-            this.subscribedClients.get(userName).notifyProjectIp(projectName, ip);
-        } catch (RemoteException e) {
-            // client crashed or unreachable
-            this.subscribedClients.remove(userName);
+            if (!this.subscribedClients.containsKey(userName)) {
+                return;
+            }
+
+            try {
+                this.subscribedClients.get(userName).notifyProjectIp(projectName, ip);
+            } catch (RemoteException e) {
+                // client crashed or unreachable
+                this.subscribedClients.remove(userName);
+            }
+        } finally {
+            this.lock.unlock();
         }
     }
 
@@ -69,17 +82,23 @@ public class CallbackServer extends RemoteObject implements CallbackServerInterf
      * @param users the clients usernames list
      * @param projectName the project's name to notify
      */
-    public synchronized  void notifyDeletedProject(List<String> users, String projectName) {
+    public void notifyDeletedProject(List<String> users, String projectName) {
 
-        for (String user : users) {
-            if (this.subscribedClients.containsKey(user)) {
-                try {
-                    this.subscribedClients.get(user).notifyDeletedProject(projectName);
-                } catch (RemoteException e) {
-                    // client crashed or unreachable
-                    this.subscribedClients.remove(user);
+        this.lock.lock();
+
+        try {
+            for (String user : users) {
+                if (this.subscribedClients.containsKey(user)) {
+                    try {
+                        this.subscribedClients.get(user).notifyDeletedProject(projectName);
+                    } catch (RemoteException e) {
+                        // client crashed or unreachable
+                        this.subscribedClients.remove(user);
+                    }
                 }
             }
+        } finally {
+            this.lock.unlock();
         }
     }
 
@@ -89,15 +108,21 @@ public class CallbackServer extends RemoteObject implements CallbackServerInterf
      * @param userName the user with new state
      * @param status the new state
      */
-    public synchronized void newUserStateEvent(String userName, boolean status) {
+    public void newUserStateEvent(String userName, boolean status) {
 
-        for (Map.Entry<String, ClientEventInterface> client : this.subscribedClients.entrySet()) {
-            try {
-                client.getValue().notifyUserEvent(userName, status);
-            } catch (RemoteException e) {
-                // client crashed or unreachable
-                this.subscribedClients.remove(client.getKey());
+        this.lock.lock();
+
+        try {
+            for (Map.Entry<String, ClientEventInterface> client : this.subscribedClients.entrySet()) {
+                try {
+                    client.getValue().notifyUserEvent(userName, status);
+                } catch (RemoteException e) {
+                    // client crashed or unreachable
+                    this.subscribedClients.remove(client.getKey());
+                }
             }
+        } finally {
+            this.lock.unlock();
         }
     }
 
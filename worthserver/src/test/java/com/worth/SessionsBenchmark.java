@@ -0,0 +1,146 @@
+package com.worth;
+
+import com.worth.managers.ProjectsManager;
+import com.worth.managers.UsersManager;
+import com.worth.rmi.callback.CallbackServer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Compares the ServerThread execution modes keeping a number of concurrent sessions open,
+ * run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass="com.worth.SessionsBenchmark" -Dexec.args="[sessions] [rounds]"
+ *
+ * Each session needs two file descriptors, raise the open files limit
+ * (ulimit -n) before running with 10000 sessions
+ */
+public class SessionsBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        for (String mode : new String[]{"threads", "virtual"}) {
+            run(mode, sessions, rounds);
+        }
+    }
+
+    private static void run(String mode, int sessions, int rounds) throws Exception {
+        CallbackServer cs = new CallbackServer();
+        ProjectsManager pm = new ProjectsManager(new ArrayList<>(), cs);
+        UsersManager um = new UsersManager(new ArrayList<>(), cs);
+
+        // closed after each mode, so its threads don't weigh on the next one
+        try {
+            measure(mode, sessions, rounds, pm, um);
+        } finally {
+            pm.close();
+        }
+    }
+
+    private static void measure(String mode, int sessions, int rounds, ProjectsManager pm, UsersManager um)
+            throws Exception {
+
+        ExecutorService sessionsExecutor = ServerMain.newSessionsExecutor(mode);
+        ServerSocket ssock = new ServerSocket(0, sessions);
+
+        Thread acceptor = new Thread(() -> {
+            try {
+                while (true) {
+                    Socket sock = ssock.accept();
+                    sessionsExecutor.execute(new ServerThread(pm, um, sock, sessionsExecutor));
+                }
+            } catch (IOException e) {
+                // server socket closed
+            }
+        });
+        acceptor.start();
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        int threadsBefore = threads.getThreadCount();
+
+        // opening all sessions
+        long start = System.nanoTime();
+
+        List<Client> clients = new ArrayList<>();
+        for (int i = 0; i < sessions; i++) {
+            clients.add(new Client(new Socket("localhost", ssock.getLocalPort())));
+        }
+
+        long connectTime = System.nanoTime() - start;
+
+        // every session sends a LIST-PROJECTS request each round
+        ExecutorService driver = Executors.newFixedThreadPool(64);
+        start = System.nanoTime();
+
+        for (int r = 0; r < rounds; r++) {
+            List<Future<?>> pending = new ArrayList<>();
+
+            for (Client c : clients) {
+                pending.add(driver.submit(() -> {
+                    c.request("2");
+                    return null;
+                }));
+            }
+
+            for (Future<?> f : pending) {
+                f.get();
+            }
+        }
+
+        long requestsTime = System.nanoTime() - start;
+
+        System.gc();
+        Runtime rt = Runtime.getRuntime();
+
+        System.out.println("[" + mode + "] sessions: " + sessions);
+        System.out.println("[" + mode + "] connect time: " + connectTime / 1_000_000 + " ms");
+        System.out.println("[" + mode + "] throughput: " +
+                (long) (sessions * (double) rounds / (requestsTime / 1e9)) + " requests/s");
+        System.out.println("[" + mode + "] platform threads: " + (threads.getThreadCount() - threadsBefore));
+        System.out.println("[" + mode + "] heap used: " + (rt.totalMemory() - rt.freeMemory()) / (1024 * 1024) + " MB");
+
+        // closing all sessions
+        for (Client c : clients) {
+            c.close();
+        }
+
+        driver.shutdown();
+        ssock.close();
+        sessionsExecutor.shutdown();
+    }
+
+    private static class Client {
+        private final Socket socket;
+        private final PrintWriter out;
+        private final BufferedReader in;
+
+        Client(Socket socket) throws IOException {
+            this.socket = socket;
+            this.out = new PrintWriter(socket.getOutputStream(), true);
+            this.in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        }
+
+        void request(String command) throws IOException {
+            this.out.println(command);
+            this.in.readLine();
+        }
+
+        void close() throws IOException {
+            this.out.println("quit");
+            this.socket.close();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.worth.chat;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TestAnnouncer {
+
+    @Test
+    public void testAnnounce() throws Exception {
+        try (DatagramSocket chat = new DatagramSocket(0)) {
+            chat.setSoTimeout(5000);
+
+            for (boolean coalesce : new boolean[]{false, true}) {
+                Announcer announcer = new Announcer(chat.getLocalPort(), 16, coalesce);
+
+                for (int i = 0; i < 10; i++) {
+                    announcer.announce("127.0.0.1", "message" + i);
+                }
+
+                announcer.close();
+                announcer.announce("127.0.0.1", "closed");
+
+                assertEquals(1, announcer.getDropped());
+
+                List<String> messages = new ArrayList<>();
+                int datagrams = 0;
+
+                while (messages.size() < 10) {
+                    DatagramPacket dp = new DatagramPacket(new byte[1024], 1024);
+                    chat.receive(dp);
+                    datagrams++;
+
+                    String s = new String(dp.getData(), 0, dp.getLength(), StandardCharsets.UTF_8);
+                    messages.addAll(Arrays.asList(s.split("\n")));
+                }
+
+                // messages of the same chat keep their order
+                for (int i = 0; i < 10; i++) {
+                    assertEquals("message" + i, messages.get(i));
+                }
+
+                if (!coalesce) {
+                    assertEquals(10, datagrams);
+                }
+            }
+        }
+    }
+}
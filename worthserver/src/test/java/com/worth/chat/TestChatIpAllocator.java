@@ -0,0 +1,48 @@
+package com.worth.chat;
+
+import com.worth.exceptions.project.ChatIpExhaustedException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.Assert.*;
+
+public class TestChatIpAllocator {
+
+    @Test
+    public void testAllocate() throws ChatIpExhaustedException {
+        ChatIpAllocator allocator = new ChatIpAllocator("239.0.0.254", "239.0.1.2");
+
+        // restored projects' ips, the second one is out of the range
+        assertTrue(allocator.reserve("239.0.1.0"));
+        assertFalse(allocator.reserve("224.0.0.1"));
+        assertFalse(allocator.reserve("239.0.1.0"));
+
+        assertEquals(5, allocator.getCapacity());
+        assertEquals("239.0.0.254", allocator.allocate());
+        assertEquals("239.0.0.255", allocator.allocate());
+        assertEquals("239.0.1.1", allocator.allocate());
+
+        // freed ips are reused first
+        allocator.free("239.0.0.255");
+        assertEquals("239.0.0.255", allocator.allocate());
+        assertEquals("239.0.1.2", allocator.allocate());
+
+        assertEquals(1.0, allocator.getUtilization(), 0);
+
+        Assertions.assertThrows(ChatIpExhaustedException.class, allocator::allocate);
+        assertEquals(1, allocator.getExhaustions());
+
+        allocator.free("239.0.1.0");
+        assertEquals(4, allocator.getUsed());
+        assertEquals("239.0.1.0", allocator.allocate());
+    }
+
+    @Test
+    public void testDefaultRange() throws ChatIpExhaustedException {
+        ChatIpAllocator allocator = new ChatIpAllocator();
+
+        // the local network control block is skipped
+        assertEquals("224.0.1.0", allocator.allocate());
+        assertEquals(16 * (1L << 24) - 256, allocator.getCapacity());
+    }
+}
@@ -1,5 +1,7 @@
 package com.worth.components;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.util.List;
@@ -50,4 +52,69 @@ public class TestCard {
         c.updateHistory(CardState.INPROGRESS);
         assertEquals(CardState.INPROGRESS, c.getState());
     }
+
+    @Test
+    public void testHistoryView() throws Exception {
+        Card c = new Card("test", "test");
+        List<CardState> before = c.getHistory();
+
+        for (int i = 0; i < 10; i++) {
+            c.updateHistory(CardState.INPROGRESS);
+            c.updateHistory(CardState.TOBEREVISED);
+        }
+
+        // views are read only and don't change when the card is moved
+        assertEquals(1, before.size());
+        assertEquals(21, c.getHistory().size());
+        assertEquals(CardState.TOBEREVISED, c.getHistory().get(20));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> c.getHistory().add(CardState.DONE));
+
+        // the history is still the list of the states' names
+        ObjectMapper mapper = new ObjectMapper();
+        String json = "{\"name\":\"test\",\"description\":\"test\",\"history\":[\"TODO\",\"INPROGRESS\"]}";
+        Card read = mapper.readValue(json, Card.class);
+
+        assertEquals(CardState.INPROGRESS, read.getState());
+        assertEquals("[\"TODO\",\"INPROGRESS\"]", mapper.readTree(mapper.writeValueAsString(read)).get("history").toString());
+    }
+
+    @Test
+    public void testTransitions() throws Exception {
+        Card c = new Card("test", "test", "user1");
+        c.updateHistory(CardState.INPROGRESS, 1000, "user2");
+
+        assertEquals("user1", c.getActors().get(0));
+        assertEquals(Long.valueOf(1000), c.getTimes().get(1));
+        assertEquals(1000, c.getStartTime());
+
+        // times and actors are saved and restored
+        ObjectMapper mapper = new ObjectMapper();
+        Card read = mapper.readValue(mapper.writeValueAsString(c), Card.class);
+
+        assertEquals(c.getCreationTime(), read.getCreationTime());
+        assertEquals("user2", read.getActors().get(1));
+
+        // cards saved by older versions have unknown times and actors
+        read = mapper.readValue("{\"name\":\"test\",\"description\":\"test\",\"history\":[\"TODO\"]}", Card.class);
+
+        assertEquals(0, read.getCreationTime());
+        assertNull(read.getActors().get(0));
+    }
+
+    @Test
+    public void testVersion() throws Exception {
+        Card c = new Card("test", "test");
+        c.updateHistory(CardState.INPROGRESS);
+
+        assertEquals(2, c.getVersion());
+        assertEquals(2, new Card(c).getVersion());
+
+        // the version is saved and restored
+        ObjectMapper mapper = new ObjectMapper();
+        assertEquals(2, mapper.readValue(mapper.writeValueAsString(c), Card.class).getVersion());
+
+        // cards saved by older versions get the length of their history
+        Card read = mapper.readValue("{\"name\":\"test\",\"description\":\"test\",\"history\":[\"TODO\",\"INPROGRESS\"]}", Card.class);
+        assertEquals(2, read.getVersion());
+    }
 }
@@ -2,12 +2,15 @@ package com.worth.components;
 
 import com.worth.exceptions.card.CardAlreadyExistsException;
 import com.worth.exceptions.card.CardNotFoundException;
+import com.worth.exceptions.card.CardVersionMismatchException;
 import com.worth.exceptions.card.IllegalCardMovementException;
 import com.worth.exceptions.user.UserAlreadyMemberException;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Assertions;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.Assert.*;
 
@@ -38,6 +41,28 @@ public class TestProject {
         assertEquals(u.getUserName(), p.getMembers().get(0));
     }
 
+    @Test
+    public void testMembersSnapshot() throws UserAlreadyMemberException {
+        Project p = new Project("project","0.0.0.0");
+        p.addMembers(Arrays.asList("user1", "user2", "user1"));
+
+        List<String> members = p.getMembers();
+
+        assertEquals(Arrays.asList("user1", "user2"), members);
+        assertSame(members, p.getMembers());
+        assertTrue(p.isMember("user2"));
+        assertFalse(p.isMember(null));
+
+        Assertions.assertThrows(UserAlreadyMemberException.class, () -> p.addMember("user2"));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> members.add("user3"));
+
+        // a previous list doesn't change when a member is added
+        p.addMember("user3");
+
+        assertEquals(2, members.size());
+        assertEquals(Arrays.asList("user1", "user2", "user3"), p.getMembers());
+    }
+
     @Test
     public void testAddCard() throws CardAlreadyExistsException, CardNotFoundException {
         String cardName = "card1";
@@ -356,4 +381,99 @@ public class TestProject {
 
         assertTrue(p.isFinished());
     }
+
+    @Test
+    public void testFlowMetrics() throws Exception {
+        Project p = new Project("project", "0.0.0.0");
+
+        p.addCard("card1", "test", "user");
+        p.addCard("card2", "test", "user");
+        p.moveCard("card1", CardState.INPROGRESS, "user");
+        p.moveCard("card1", CardState.DONE, "user");
+        p.moveCard("card2", CardState.INPROGRESS, "user");
+
+        Map<String, FlowStats> metrics = p.getFlowMetrics();
+
+        assertEquals(1, metrics.get("leadTime").getCount());
+        assertEquals(1, metrics.get("cycleTime").getCount());
+        assertTrue(metrics.get("leadTime").getMax() >= metrics.get("cycleTime").getMax());
+
+        // restored done cards are counted too
+        Card done = new Card();
+        done.setName("card3");
+        done.setHistory(Arrays.asList(CardState.TODO, CardState.INPROGRESS, CardState.DONE));
+        done.setTimes(Arrays.asList(1000L, 3000L, 7000L));
+
+        p.addCards(Arrays.asList(done));
+        metrics = p.getFlowMetrics();
+
+        assertEquals(2, metrics.get("leadTime").getCount());
+        assertEquals(6000, metrics.get("leadTime").getMax());
+        assertEquals(4000, metrics.get("cycleTime").getMax());
+    }
+
+    @Test
+    public void testVersion() throws Exception {
+        Project p = new Project("project", "0.0.0.0");
+
+        p.addMember("user");
+        p.addCard("card", "test", "user");
+        p.moveCard("card", CardState.INPROGRESS, "user");
+
+        assertEquals(3, p.getVersion());
+
+        Assertions.assertThrows(CardVersionMismatchException.class, () -> {
+            p.moveCard("card", CardState.DONE, "user", 1);
+        });
+
+        p.moveCard("card", CardState.DONE, "user", 2);
+        assertEquals(4, p.getVersion());
+
+        // restored projects count the restored changes
+        Project restored = new Project("project", "0.0.0.0");
+        restored.addMembers(p.getMembers());
+        restored.addCards(Arrays.asList(p.getCard("card")));
+
+        assertEquals(p.getVersion(), restored.getVersion());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testChangesSince() throws Exception {
+        Project p = new Project("project", "0.0.0.0");
+
+        p.addMember("user");
+        p.addCard("card1", "test", "user");
+        p.addCard("card2", "test", "user");
+
+        long version = p.getVersion();
+
+        p.moveCard("card1", CardState.INPROGRESS, "user");
+        p.moveCard("card1", CardState.DONE, "user");
+        p.addMember("other");
+
+        Map<String, Object> changes = p.getChangesSince(version);
+        List<Card> cards = (List<Card>) changes.get("cards");
+
+        assertEquals(version + 3, changes.get("version"));
+        assertEquals(false, changes.get("full"));
+        assertEquals(1, cards.size());
+        assertEquals(CardState.DONE, cards.get(0).getState());
+
+        // nothing changed since the current version
+        assertTrue(((List<Card>) p.getChangesSince(version + 3).get("cards")).isEmpty());
+
+        // unknown versions get all the cards
+        assertEquals(true, p.getChangesSince(version + 4).get("full"));
+
+        for (int i = 0; i < Project.changeLogSize; i++) {
+            p.addCard("card" + (i + 3), "test", "user");
+        }
+
+        changes = p.getChangesSince(version);
+
+        assertEquals(true, changes.get("full"));
+        assertEquals(Project.changeLogSize + 2, ((List<Card>) changes.get("cards")).size());
+        assertEquals(false, p.getChangesSince(p.getVersion() - Project.changeLogSize).get("full"));
+    }
 }
@@ -0,0 +1,220 @@
+package com.worth.io;
+
+import com.worth.chat.ChatIpAllocator;
+import com.worth.components.Card;
+import com.worth.components.CardState;
+import com.worth.components.Project;
+import com.worth.exceptions.StorageException;
+import com.worth.managers.ProjectsManager;
+import com.worth.rmi.callback.CallbackServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class TestJournal {
+    private static final String path = "testjournal";
+
+    @AfterEach
+    public void clean() {
+        new File(path).delete();
+        new File(path + ".snapshot").delete();
+    }
+
+    @Test
+    public void testReplay() throws Exception {
+        Journal journal = new Journal(path);
+
+        assertTrue(journal.restoreProjects().isEmpty());
+
+        Project p = new Project("project", "239.0.0.1");
+        p.addMember("user1");
+        journal.addProject(p);
+
+        p.addMember("user2");
+        journal.updateMembers(p);
+
+        p.addCard("card1", "description", "user1");
+        journal.updateCard(p, p.getCard("card1"));
+
+        // cards added and moved by a batch
+        p.moveCard("card1", CardState.INPROGRESS, "user2");
+        p.addCard("card2", "description", "user2");
+        p.moveCard("card2", CardState.INPROGRESS, "user2");
+        journal.updateCards(p, Arrays.asList(p.getCard("card1"), p.getCard("card2")));
+
+        Project deleted = new Project("deleted", "239.0.0.2");
+        deleted.addMember("user1");
+        journal.addProject(deleted);
+        journal.delProject(deleted);
+
+        journal.close();
+
+        long length = new File(path).length();
+
+        // a record partially written by a crash
+        try (FileOutputStream out = new FileOutputStream(path, true)) {
+            out.write(new byte[]{0, 0, 0, 42, 1, 2});
+        }
+
+        journal = new Journal(path);
+        List<Project> projects = journal.restoreProjects();
+
+        assertEquals(length, new File(path).length());
+        assertEquals(1, projects.size());
+
+        Project restored = projects.get(0);
+        Card card1 = restored.getCard("card1");
+
+        assertEquals("239.0.0.1", restored.getChatIp());
+        assertEquals(Arrays.asList("user1", "user2"), restored.getMembers());
+        assertEquals(Arrays.asList(CardState.TODO, CardState.INPROGRESS), card1.getHistory());
+        assertEquals(p.getCard("card1").getTimes(), card1.getTimes());
+        assertEquals("user2", card1.getActors().get(1));
+        assertEquals(CardState.INPROGRESS, restored.getCardState("card2"));
+        assertEquals(p.getVersion(), restored.getVersion());
+
+        // only the changes not yet saved are appended
+        p.moveCard("card1", CardState.DONE, "user1");
+        journal.updateCards(restored, Arrays.asList(p.getCard("card1"), p.getCard("card2")));
+        journal.close();
+
+        journal = new Journal(path);
+        restored = journal.restoreProjects().get(0);
+        journal.close();
+
+        assertEquals(3, restored.getCard("card1").getHistory().size());
+        assertEquals(2, restored.getCard("card2").getHistory().size());
+    }
+
+    @Test
+    public void testGroupCommit() throws Exception {
+        Journal journal = new Journal(path, 5000, 64);
+        ProjectsManager pm = new ProjectsManager(new ArrayList<>(), new CallbackServer(), new ChatIpAllocator(), journal);
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        List<Future<?>> done = new ArrayList<>();
+
+        for (int i = 0; i < 8; i++) {
+            String projectName = "groupproject" + i;
+
+            done.add(clients.submit(() -> {
+                pm.createProject(projectName, "user");
+
+                for (int c = 0; c < 20; c++) {
+                    pm.addCard(projectName, "card" + c, "description", "user");
+                }
+
+                return null;
+            }));
+        }
+
+        for (Future<?> f : done) {
+            f.get();
+        }
+
+        clients.shutdown();
+
+        // the changes of concurrent clients are forced together
+        Map<String, Number> metrics = journal.getMetrics();
+
+        assertEquals(8 * 21L, metrics.get("appends"));
+        assertTrue(metrics.get("maxBatchSize").intValue() > 1);
+        assertTrue(metrics.get("batches").longValue() < 8 * 21L);
+
+        pm.close();
+
+        journal = new Journal(path);
+        List<Project> projects = journal.restoreProjects();
+        journal.close();
+
+        assertEquals(8, projects.size());
+
+        for (Project p : projects) {
+            assertEquals(20, p.getCards().size());
+        }
+    }
+
+    @Test
+    public void testSnapshot() throws Exception {
+        Journal journal = new Journal(path);
+        ProjectsManager pm = new ProjectsManager(new ArrayList<>(), new CallbackServer(), new ChatIpAllocator(), journal);
+
+        pm.createProject("snapproject", "user1");
+        pm.addMember("snapproject", "user2", "user1");
+
+        for (int c = 0; c < 10; c++) {
+            pm.addCard("snapproject", "card" + c, "description", "user1");
+            pm.moveCard("snapproject", "card" + c, CardState.INPROGRESS, "user2");
+        }
+
+        pm.createProject("cancelled", "user1");
+        pm.cancelProject("cancelled", "user1");
+
+        byte[] full = Files.readAllBytes(Paths.get(path));
+
+        pm.snapshot();
+
+        // the journal is cut to the records appended after the snapshot
+        assertEquals(0, new File(path).length());
+        assertTrue(new File(path + ".snapshot").exists());
+
+        pm.moveCard("snapproject", "card0", CardState.DONE, "user2");
+        pm.close();
+
+        journal = new Journal(path);
+        List<Project> projects = journal.restoreProjects();
+        journal.close();
+
+        assertEquals(1, projects.size());
+
+        Project restored = projects.get(0);
+
+        assertEquals(Arrays.asList("user1", "user2"), restored.getMembers());
+        assertEquals(10, restored.getCards().size());
+        assertEquals(CardState.DONE, restored.getCardState("card0"));
+        assertEquals(CardState.INPROGRESS, restored.getCardState("card9"));
+        assertEquals(3, restored.getCard("card0").getHistory().size());
+
+        // a crash before the compaction replays records already in the snapshot
+        Files.write(Paths.get(path), full);
+
+        journal = new Journal(path);
+        restored = journal.restoreProjects().get(0);
+        journal.close();
+
+        assertEquals(Arrays.asList("user1", "user2"), restored.getMembers());
+        assertEquals(10, restored.getCards().size());
+        assertEquals(2, restored.getCard("card9").getHistory().size());
+    }
+
+    @Test
+    public void testNotSaved() throws Exception {
+        Journal journal = new Journal(path);
+        ProjectsManager pm = new ProjectsManager(new ArrayList<>(), new CallbackServer(), new ChatIpAllocator(), journal);
+
+        pm.createProject("savedproject", "user1");
+        journal.close();
+
+        // committed in memory, but reported as not saved
+        Assertions.assertThrows(StorageException.class, () -> {
+            pm.addCard("savedproject", "card", "description", "user1");
+        });
+
+        assertEquals(1, pm.showCards("savedproject", "user1").size());
+
+        pm.close();
+    }
+}
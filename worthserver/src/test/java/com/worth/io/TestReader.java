@@ -18,6 +18,8 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.junit.Assert.assertEquals;
 
@@ -112,6 +114,37 @@ public class TestReader {
         check(projects.get(0), users);
     }
 
+    @Test
+    public void testRestoreProjectsStreaming() throws CardAlreadyExistsException, CardNotFoundException,
+            IllegalCardMovementException, UserAlreadyMemberException {
+
+        for (int i = 0; i < 50; i++) {
+            Project p = new Project("proj" + i, "239.0.0." + i);
+
+            p.addCard("card1", "desc");
+            p.addCard("card2", "desc");
+            p.moveCard("card2", CardState.INPROGRESS);
+            p.addMember("user" + i);
+
+            Writer.addProject(p);
+        }
+
+        Map<String, Project> projects = new ConcurrentHashMap<>();
+
+        Reader.restoreProjects(p -> projects.put(p.getName(), p));
+
+        assertEquals(50, projects.size());
+
+        for (int i = 0; i < 50; i++) {
+            Project p = projects.get("proj" + i);
+
+            assertEquals("239.0.0." + i, p.getChatIp());
+            assertEquals(Arrays.asList("user" + i), p.getMembers());
+            assertEquals(CardState.TODO, p.getCardState("card1"));
+            assertEquals(Arrays.asList(CardState.TODO, CardState.INPROGRESS), p.getCard("card2").getHistory());
+        }
+    }
+
     private void check(Project p, List<User> users) throws CardNotFoundException {
         assertEquals(p.getCard("card1").getState(), CardState.TODO);
         assertEquals(p.getCard("card2").getState(), CardState.INPROGRESS);
@@ -0,0 +1,117 @@
+package com.worth.io;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.worth.components.Card;
+import com.worth.components.CardState;
+import com.worth.components.Project;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TestWriteBehindPersistence {
+    private static String projectsBase = "db/projects";
+
+    private WriteBehindPersistence persistence;
+
+
+    @BeforeEach
+    public void createDB() {
+        Writer.createDB();
+
+        // flushed only explicitly
+        this.persistence = new WriteBehindPersistence(60 * 60 * 1000);
+    }
+
+    @AfterEach
+    public void clean() throws IOException {
+        this.persistence.close();
+
+        delete(new File("./db"));
+    }
+
+    @Test
+    public void testCoalescing() throws Exception {
+        Project p = new Project("wbproject", "0.0.0.0");
+        p.addMember("user");
+
+        this.persistence.addProject(p);
+        this.persistence.flush();
+
+        assertTrue(new File(projectsBase + "/wbproject/.meta/members").exists());
+
+        p.addCard("card", "description");
+        this.persistence.updateCard(p, p.getCard("card"));
+
+        p.moveCard("card", CardState.INPROGRESS);
+        this.persistence.updateCard(p, p.getCard("card"));
+
+        p.moveCard("card", CardState.DONE);
+        this.persistence.updateCard(p, p.getCard("card"));
+
+        // nothing written yet, three changes of a single card
+        File cardFile = new File(projectsBase + "/wbproject/card");
+
+        assertFalse(cardFile.exists());
+        assertEquals(1, this.persistence.getQueueDepth());
+
+        Map<String, Number> metrics = this.persistence.getMetrics();
+
+        assertEquals(4L, metrics.get("changes"));
+        assertEquals(1L, metrics.get("writes"));
+
+        this.persistence.flush();
+
+        Card c = new ObjectMapper().readValue(cardFile, Card.class);
+
+        assertEquals(CardState.DONE, c.getState());
+        assertEquals(0, this.persistence.getQueueDepth());
+        assertEquals(0, this.persistence.getFlushLag());
+        assertEquals(2L, this.persistence.getMetrics().get("writes"));
+    }
+
+    @Test
+    public void testCreatedAndDeleted() throws Exception {
+        Project p = new Project("wbtemp", "0.0.0.0");
+
+        this.persistence.addProject(p);
+        this.persistence.delProject(p);
+
+        assertEquals(0, this.persistence.getQueueDepth());
+
+        this.persistence.flush();
+
+        assertFalse(new File(projectsBase + "/wbtemp").exists());
+
+        // written at close
+        Project q = new Project("wbclosed", "0.0.0.0");
+
+        this.persistence.addProject(q);
+        this.persistence.close();
+
+        assertTrue(new File(projectsBase + "/wbclosed").exists());
+    }
+
+    private static void delete(File file) throws IOException {
+
+        for (File childFile : file.listFiles()) {
+
+            if (childFile.isDirectory()) {
+                delete(childFile);
+            } else {
+                if (!childFile.delete()) {
+                    throw new IOException();
+                }
+            }
+        }
+
+        if (!file.delete()) {
+            throw new IOException();
+        }
+    }
+}
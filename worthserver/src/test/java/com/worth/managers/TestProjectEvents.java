@@ -0,0 +1,86 @@
+package com.worth.managers;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class TestProjectEvents {
+    private ProjectEvents events;
+
+
+    @BeforeEach
+    public void create() {
+        this.events = new ProjectEvents(2);
+    }
+
+    @AfterEach
+    public void close() {
+        this.events.close();
+    }
+
+    @Test
+    public void testNotifyOnceDurable() throws Exception {
+        AtomicInteger notified = new AtomicInteger();
+        CompletableFuture<Void> saved = new CompletableFuture<>();
+
+        CompletableFuture<Void> durable = this.events.publish("project", () -> saved, notified::incrementAndGet);
+
+        // saved but not yet durable
+        this.events.flush();
+
+        assertFalse(durable.isDone());
+        assertEquals(0, notified.get());
+
+        saved.complete(null);
+        durable.join();
+        this.events.flush();
+
+        assertEquals(1, notified.get());
+    }
+
+    @Test
+    public void testNoNotifyIfNotSaved() {
+        AtomicInteger notified = new AtomicInteger();
+        CompletableFuture<Void> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IOException("disk full"));
+
+        CompletableFuture<Void> durable = this.events.publish("project", () -> failed, notified::incrementAndGet);
+        CompletableFuture<Void> thrown = this.events.publish("project", () -> {
+            throw new IllegalStateException("closed");
+        }, notified::incrementAndGet);
+
+        this.events.flush();
+
+        assertTrue(durable.isCompletedExceptionally());
+        assertTrue(thrown.isCompletedExceptionally());
+        assertEquals(0, notified.get());
+    }
+
+    @Test
+    public void testSlowNotifyNotBlockingSaves() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> saved = CompletableFuture.completedFuture(null);
+
+        this.events.publish("project", () -> saved, () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        // the next change of the same project is saved while the first one is still being notified
+        CompletableFuture<Void> durable = this.events.publish("project", () -> saved, () -> {});
+
+        durable.get(10, TimeUnit.SECONDS);
+        release.countDown();
+    }
+}
@@ -1,29 +1,57 @@
 package com.worth.managers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.worth.components.Card;
+import com.worth.components.CardState;
+import com.worth.components.Project;
 import com.worth.components.User;
 import com.worth.exceptions.OperationNotAllowedException;
+import com.worth.exceptions.StorageException;
+import com.worth.exceptions.card.CardAlreadyExistsException;
+import com.worth.exceptions.card.CardNotFoundException;
+import com.worth.exceptions.card.CardVersionMismatchException;
+import com.worth.exceptions.card.IllegalCardMovementException;
+import com.worth.exceptions.project.ChatIpExhaustedException;
 import com.worth.exceptions.project.ProjectAlreadyExistsException;
 import com.worth.exceptions.project.ProjectNotFoundException;
 import com.worth.io.Writer;
 import com.worth.rmi.callback.CallbackServer;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 public class TestProjectsManager {
+    private final List<ProjectsManager> managers = new ArrayList<>();
 
     @BeforeEach
     public void createDB() {
         Writer.createDB();
     }
 
+    // waiting for the filesystem updates before the next tests
+    @AfterEach
+    public void close() {
+        for (ProjectsManager pm : this.managers) {
+            pm.close();
+        }
+    }
+
     @Test
-    public void testCreateProject() throws ProjectAlreadyExistsException {
-        ProjectsManager pm = new ProjectsManager(new ArrayList<>(), new CallbackServer());
+    public void testCreateProject()
+            throws ProjectAlreadyExistsException, ChatIpExhaustedException, StorageException {
+        ProjectsManager pm = this.manager(new ArrayList<>());
         User u = new User("user", "test");
 
         pm.createProject("project", u.getUserName());
@@ -37,8 +65,9 @@ public class TestProjectsManager {
 
     @Test
     public void testCancelProject()
-            throws ProjectAlreadyExistsException, OperationNotAllowedException, ProjectNotFoundException {
-        ProjectsManager pm = new ProjectsManager(new ArrayList<>(), new CallbackServer());
+            throws ProjectAlreadyExistsException, ChatIpExhaustedException, OperationNotAllowedException, ProjectNotFoundException,
+            StorageException {
+        ProjectsManager pm = this.manager(new ArrayList<>());
         User u1 = new User("user1", "test");
         User u2 = new User("user2", "test");
 
@@ -56,4 +85,305 @@ public class TestProjectsManager {
             pm.cancelProject("project", u1.getUserName());
         });
     }
+
+    @Test
+    public void testBatch()
+            throws ProjectAlreadyExistsException, ChatIpExhaustedException, OperationNotAllowedException, ProjectNotFoundException, CardNotFoundException,
+            StorageException {
+        ProjectsManager pm = this.manager(new ArrayList<>());
+
+        pm.createProject("batchproject", "user1");
+
+        List<BatchOperation> ops = Arrays.asList(
+                new BatchOperation(BatchOperation.ADD_CARD, "card1", "desc", null),
+                new BatchOperation(BatchOperation.ADD_CARD, "card2", "desc", null),
+                new BatchOperation(BatchOperation.MOVE_CARD, "card1", null, "inprogress"),
+                new BatchOperation(BatchOperation.ADD_CARD, "card1", "desc", null),
+                new BatchOperation(BatchOperation.MOVE_CARD, "card2", null, "done"),
+                new BatchOperation(BatchOperation.MOVE_CARD, "card3", null, "done"),
+                new BatchOperation(BatchOperation.MOVE_CARD, "card1", null, "nowhere"),
+                new BatchOperation("DELETE-CARD", "card1", null, null));
+
+        List<Exception> results = pm.batch("batchproject", ops, "user1");
+
+        assertEquals(ops.size(), results.size());
+        assertNull(results.get(0));
+        assertNull(results.get(1));
+        assertNull(results.get(2));
+        assertTrue(results.get(3) instanceof CardAlreadyExistsException);
+        assertTrue(results.get(4) instanceof IllegalCardMovementException);
+        assertTrue(results.get(5) instanceof CardNotFoundException);
+        assertNotNull(results.get(6));
+        assertTrue(results.get(7) instanceof UnsupportedOperationException);
+
+        assertEquals(CardState.INPROGRESS, pm.showCard("batchproject", "card1", "user1").getState());
+        assertEquals(CardState.TODO, pm.showCard("batchproject", "card2", "user1").getState());
+
+        Assertions.assertThrows(OperationNotAllowedException.class, () -> {
+            pm.batch("batchproject", ops, "user2");
+        });
+
+        Assertions.assertThrows(ProjectNotFoundException.class, () -> {
+            pm.batch("project1", ops, "user1");
+        });
+
+        // moving cards to done to remove the project
+        pm.batch("batchproject", Arrays.asList(
+                new BatchOperation(BatchOperation.MOVE_CARD, "card1", null, "done"),
+                new BatchOperation(BatchOperation.MOVE_CARD, "card2", null, "inprogress"),
+                new BatchOperation(BatchOperation.MOVE_CARD, "card2", null, "done")), "user1");
+
+        pm.cancelProject("batchproject", "user1");
+    }
+
+    @Test
+    public void testMalformedBatch() throws Exception {
+        ProjectsManager pm = this.manager(new ArrayList<>());
+
+        pm.createProject("malformedproject", "user");
+
+        List<BatchOperation> ops = Arrays.asList(
+                new BatchOperation(BatchOperation.ADD_CARD, "card1", "desc", null),
+                new BatchOperation(BatchOperation.ADD_CARD, null, "desc", null),
+                new BatchOperation(BatchOperation.ADD_CARD, "card2", null, null),
+                null,
+                new BatchOperation(BatchOperation.MOVE_CARD, "card1", null, "inprogress"));
+
+        List<Exception> results = pm.batch("malformedproject", ops, "user");
+
+        assertEquals(ops.size(), results.size());
+        assertNull(results.get(0));
+        assertTrue(results.get(1) instanceof IllegalArgumentException);
+        assertTrue(results.get(2) instanceof IllegalArgumentException);
+        assertTrue(results.get(3) instanceof IllegalArgumentException);
+        assertNull(results.get(4));
+
+        // the valid operations are applied and saved
+        assertEquals(Arrays.asList("card1"), pm.showCards("malformedproject", "user"));
+
+        pm.flush();
+
+        Card c = new ObjectMapper().readValue(new File("db/projects/malformedproject/card1"), Card.class);
+        assertEquals(CardState.INPROGRESS, c.getState());
+
+        pm.moveCard("malformedproject", "card1", CardState.DONE, "user");
+        pm.cancelProject("malformedproject", "user");
+    }
+
+    @Test
+    public void testChatMetrics() throws Exception {
+        ProjectsManager pm = this.manager(new ArrayList<>());
+
+        pm.createProject("metricsproject1", "user");
+        pm.createProject("metricsproject2", "user");
+
+        Map<String, Number> metrics = pm.chatMetrics();
+
+        assertEquals(2, metrics.get("used").intValue());
+        assertEquals(0L, metrics.get("droppedMessages"));
+
+        pm.cancelProject("metricsproject1", "user");
+        pm.cancelProject("metricsproject2", "user");
+
+        assertEquals(0, pm.chatMetrics().get("used").intValue());
+    }
+
+    @Test
+    public void testProjectsLocking() throws Exception {
+        ProjectsManager pm = this.manager(new ArrayList<>());
+
+        pm.createProject("lockedproject", "user");
+        pm.createProject("freeproject", "user");
+
+        Project locked = null;
+
+        for (Project p : pm.listProjectsOf("user")) {
+            if (p.getName().equals("lockedproject")) {
+                locked = p;
+            }
+        }
+
+        locked.getLock().asWriteLock().lock();
+
+        try {
+            // operations on other projects don't wait for the locked one
+            CompletableFuture<List<String>> cards = CompletableFuture.supplyAsync(() -> {
+                try {
+                    pm.addCard("freeproject", "card", "description", "user");
+                    return pm.showCards("freeproject", "user");
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+
+            assertEquals(Arrays.asList("card"), cards.get(5, TimeUnit.SECONDS));
+
+            // reads on a project being changed wait for the change
+            CompletableFuture<List<String>> members = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return pm.showMembers("lockedproject", "user");
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+
+            Thread.sleep(100);
+            assertFalse(members.isDone());
+
+            locked.getLock().asWriteLock().unlock();
+            assertEquals(Arrays.asList("user"), members.get(5, TimeUnit.SECONDS));
+        } finally {
+            if (locked.getLock().isWriteLocked()) {
+                locked.getLock().asWriteLock().unlock();
+            }
+        }
+
+        pm.moveCard("freeproject", "card", CardState.INPROGRESS, "user");
+        pm.moveCard("freeproject", "card", CardState.DONE, "user");
+        pm.cancelProject("freeproject", "user");
+        pm.cancelProject("lockedproject", "user");
+
+        assertEquals(0, pm.listProjects().size());
+    }
+
+    @Test
+    public void testOptimisticReads() throws Exception {
+        ProjectsManager pm = this.manager(new ArrayList<>());
+        int n = 200;
+
+        pm.createProject("readproject", "user");
+
+        // reading while cards are added and moved, a card is never seen twice
+        CompletableFuture<Void> reader = CompletableFuture.runAsync(() -> {
+            try {
+                int seen = 0;
+
+                while (seen < n) {
+                    List<String> cards = pm.showCards("readproject", "user");
+
+                    assertEquals(cards.size(), new HashSet<>(cards).size());
+                    assertTrue(cards.size() >= seen);
+                    seen = cards.size();
+                }
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        for (int i = 0; i < n; i++) {
+            pm.addCard("readproject", "card" + i, "description", "user");
+            pm.moveCard("readproject", "card" + i, CardState.INPROGRESS, "user");
+        }
+
+        reader.get(30, TimeUnit.SECONDS);
+
+        for (int i = 0; i < n; i++) {
+            pm.moveCard("readproject", "card" + i, CardState.DONE, "user");
+        }
+
+        pm.cancelProject("readproject", "user");
+    }
+
+    @Test
+    public void testListProjectsOf() throws Exception {
+        Project restored = new Project("restoredproject", "239.0.0.1");
+        restored.addMembers(Arrays.asList("user1", "user2"));
+
+        ProjectsManager pm = this.manager(new ArrayList<>(Arrays.asList(restored)));
+
+        pm.createProject("indexedproject", "user1");
+        pm.addMember("indexedproject", "user3", "user1");
+
+        assertEquals(2, pm.listProjectsOf("user1").size());
+        assertEquals("restoredproject", pm.listProjectsOf("user2").get(0).getName());
+        assertEquals("indexedproject", pm.listProjectsOf("user3").get(0).getName());
+        assertEquals(0, pm.listProjectsOf("user4").size());
+
+        pm.cancelProject("indexedproject", "user3");
+
+        assertEquals(1, pm.listProjectsOf("user1").size());
+        assertEquals(0, pm.listProjectsOf("user3").size());
+    }
+
+    @Test
+    public void testSummary() throws Exception {
+        ProjectsManager pm = this.manager(new ArrayList<>());
+
+        pm.createProject("summaryproject1", "user");
+        pm.createProject("summaryproject2", "user");
+        pm.createProject("summaryproject3", "other");
+
+        pm.addCard("summaryproject1", "card1", "description", "user");
+        pm.addCard("summaryproject1", "card2", "description", "user");
+        pm.moveCard("summaryproject1", "card2", CardState.INPROGRESS, "user");
+
+        Map<String, Map<CardState, Integer>> summary = pm.summary("user");
+
+        assertEquals(2, summary.size());
+        assertEquals(Integer.valueOf(1), summary.get("summaryproject1").get(CardState.TODO));
+        assertEquals(Integer.valueOf(1), summary.get("summaryproject1").get(CardState.INPROGRESS));
+        assertEquals(Integer.valueOf(0), summary.get("summaryproject1").get(CardState.DONE));
+        assertEquals(Integer.valueOf(0), summary.get("summaryproject2").get(CardState.TODO));
+
+        pm.moveCard("summaryproject1", "card1", CardState.INPROGRESS, "user");
+        pm.moveCard("summaryproject1", "card1", CardState.DONE, "user");
+        pm.moveCard("summaryproject1", "card2", CardState.DONE, "user");
+
+        assertEquals(Integer.valueOf(2), pm.summary("user").get("summaryproject1").get(CardState.DONE));
+
+        pm.cancelProject("summaryproject1", "user");
+        pm.cancelProject("summaryproject2", "user");
+        pm.cancelProject("summaryproject3", "other");
+    }
+
+    @Test
+    public void testEvents() throws Exception {
+        ProjectsManager pm = this.manager(new ArrayList<>());
+        File cardFile = new File("db/projects/eventsproject/card");
+
+        pm.createProject("eventsproject", "user");
+        pm.addCard("eventsproject", "card", "description", "user");
+        pm.moveCard("eventsproject", "card", CardState.INPROGRESS, "user");
+        pm.flush();
+
+        // the file holds the card as of the last change
+        Card c = new ObjectMapper().readValue(cardFile, Card.class);
+        assertEquals(CardState.INPROGRESS, c.getState());
+
+        pm.moveCard("eventsproject", "card", CardState.DONE, "user");
+        pm.cancelProject("eventsproject", "user");
+        pm.close();
+
+        assertFalse(cardFile.exists());
+    }
+
+    @Test
+    public void testConditionalMove() throws Exception {
+        ProjectsManager pm = this.manager(new ArrayList<>());
+
+        pm.createProject("versionproject", "user1");
+        pm.addMember("versionproject", "user2", "user1");
+        pm.addCard("versionproject", "card", "description", "user1");
+
+        long version = pm.showCard("versionproject", "card", "user1").getVersion();
+
+        // both members read the same version, only the first move succeeds
+        pm.moveCard("versionproject", "card", CardState.INPROGRESS, "user1", version);
+
+        Assertions.assertThrows(CardVersionMismatchException.class, () -> {
+            pm.moveCard("versionproject", "card", CardState.DONE, "user2", version);
+        });
+
+        assertEquals(CardState.INPROGRESS, pm.showCard("versionproject", "card", "user2").getState());
+
+        pm.moveCard("versionproject", "card", CardState.DONE, "user2", version + 1);
+        pm.cancelProject("versionproject", "user1");
+    }
+
+    private ProjectsManager manager(List<Project> projects) {
+        ProjectsManager pm = new ProjectsManager(projects, new CallbackServer());
+        this.managers.add(pm);
+
+        return pm;
+    }
 }
@@ -0,0 +1,214 @@
+package com.worth.nio;
+
+import com.worth.components.User;
+import com.worth.managers.ProjectsManager;
+import com.worth.managers.UsersManager;
+import com.worth.protocol.BinaryCodec;
+import com.worth.protocol.Request;
+import com.worth.protocol.Response;
+import com.worth.rmi.callback.CallbackServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TestSelectorServer {
+
+    @AfterEach
+    public void clean() {
+        File[] projects = new File("db/projects").listFiles((dir, name) -> name.startsWith("pipelineproj"));
+
+        if (projects != null) {
+            for (File p : projects) {
+                delete(p);
+            }
+        }
+    }
+
+    @Test
+    public void testRequests() throws IOException {
+        CallbackServer cs = new CallbackServer();
+
+        ArrayList<User> users = new ArrayList<>();
+        users.add(new User("user", "test"));
+
+        UsersManager um = new UsersManager(users, cs);
+        ProjectsManager pm = new ProjectsManager(new ArrayList<>(), cs);
+
+        SelectorServer server = new SelectorServer(pm, um, 0, 2, 2);
+        new Thread(server).start();
+
+        try (
+                Socket socket = new Socket("localhost", server.getPort());
+                PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()))
+        ) {
+            // testing unknown operation
+            out.println("42");
+            assertEquals("1%Unknown operation", in.readLine());
+
+            // testing pipelined requests, responses have to arrive in order
+            out.print("0%user%wrong\n0%user%test\n2\n");
+            out.flush();
+
+            assertTrue(in.readLine().startsWith("3%"));
+            assertTrue(in.readLine().startsWith("0%Logged in successfully"));
+            assertEquals("0%[]", in.readLine());
+
+            out.println("1%user");
+            assertEquals("0%Logged out successfully", in.readLine());
+
+            out.println("quit");
+            assertNull(in.readLine());
+        } finally {
+            server.close();
+            pm.flush();
+        }
+
+        assertFalse(um.getUsersList().get("user"));
+    }
+
+    @Test
+    public void testBinaryRequests() throws Exception {
+        CallbackServer cs = new CallbackServer();
+
+        UsersManager um = new UsersManager(new ArrayList<>(), cs);
+        ProjectsManager pm = new ProjectsManager(new ArrayList<>(), cs);
+
+        SelectorServer server = new SelectorServer(pm, um, 0, 1, 1);
+        new Thread(server).start();
+
+        try (Socket socket = new Socket("localhost", server.getPort())) {
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+
+            // handshake and two requests sent together
+            out.write(new byte[]{BinaryCodec.MAGIC, BinaryCodec.VERSION});
+            out.write(BinaryCodec.encode(new Request(42)).array());
+            out.write(BinaryCodec.encode(new Request(2)).array());
+            out.flush();
+
+            assertEquals(BinaryCodec.MAGIC, in.read());
+            assertEquals(BinaryCodec.VERSION, in.read());
+
+            Response r = readResponse(in);
+            assertEquals(1, r.getCode());
+            assertEquals("Unknown operation", r.field(0));
+
+            r = readResponse(in);
+            assertEquals(0, r.getCode());
+            assertEquals("[]", r.field(0));
+
+            out.write(BinaryCodec.encode(new Request(Request.QUIT)).array());
+            assertEquals(-1, in.read());
+        } finally {
+            server.close();
+            pm.flush();
+        }
+    }
+
+    @Test
+    public void testPipelinedRequests() throws IOException {
+        CallbackServer cs = new CallbackServer();
+
+        ArrayList<User> users = new ArrayList<>();
+        users.add(new User("user", "test"));
+
+        UsersManager um = new UsersManager(users, cs);
+        ProjectsManager pm = new ProjectsManager(new ArrayList<>(), cs);
+
+        SelectorServer server = new SelectorServer(pm, um, 0, 1, 4);
+        new Thread(server).start();
+
+        try (
+                Socket socket = new Socket("localhost", server.getPort());
+                PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()))
+        ) {
+            StringBuilder requests = new StringBuilder("#0%0%user%test\n");
+
+            // requests on the same project have to be executed in order
+            for (int p = 0; p < 4; p++) {
+                requests.append("#").append(1 + p * 11).append("%3%pipelineproj").append(p).append("\n");
+
+                for (int c = 0; c < 10; c++) {
+                    requests.append("#").append(2 + p * 11 + c).append("%8%pipelineproj").append(p)
+                            .append("%card").append(c).append("%desc\n");
+                }
+            }
+
+            // untagged request executed after all the previous ones
+            requests.append("2\n");
+
+            out.print(requests);
+            out.flush();
+
+            Map<Integer, String> responses = new HashMap<>();
+
+            for (int i = 0; i < 45; i++) {
+                String line = in.readLine();
+                int sep = line.indexOf('%');
+
+                assertTrue(line.startsWith("#"));
+                responses.put(Integer.parseInt(line.substring(1, sep)), line.substring(sep + 1));
+            }
+
+            assertEquals(45, responses.size());
+
+            for (String response : responses.values()) {
+                assertTrue(response.startsWith("0%"));
+            }
+
+            assertEquals(4, pm.listProjectsOf("user").size());
+            assertTrue(in.readLine().startsWith("0%[\"pipelineproj"));
+
+            for (int p = 0; p < 4; p++) {
+                out.println("11%pipelineproj" + p);
+                assertTrue(in.readLine().startsWith("6%"));
+            }
+
+            out.println("quit");
+        } finally {
+            server.close();
+            pm.flush();
+        }
+    }
+
+    private static Response readResponse(InputStream in) throws Exception {
+        ByteBuffer buf = ByteBuffer.allocate(1024);
+        Response r;
+
+        while ((r = BinaryCodec.decodeResponse(buf.flip())) == null) {
+            buf.compact();
+            buf.put((byte) in.read());
+        }
+
+        return r;
+    }
+
+    // Deletes a file or a directory and its children.
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+
+        file.delete();
+    }
+}
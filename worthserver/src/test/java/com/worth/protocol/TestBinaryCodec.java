@@ -0,0 +1,112 @@
+package com.worth.protocol;
+
+import com.worth.exceptions.ProtocolException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TestBinaryCodec {
+
+    @Test
+    public void testRequest() throws Exception {
+        Request r1 = new Request(8, "project", "card", "100% done, \u00e8 ok \ud83d\ude00");
+        ByteBuffer frame = BinaryCodec.encode(r1);
+
+        Request r2 = BinaryCodec.decode(frame);
+
+        assertEquals(8, r2.getOpcode());
+        assertEquals(3, r2.size());
+        assertEquals("project", r2.field(0));
+        assertEquals("card", r2.field(1));
+        assertEquals("100% done, \u00e8 ok \ud83d\ude00", r2.field(2));
+        assertFalse(frame.hasRemaining());
+
+        // testing quit request
+        frame = BinaryCodec.encode(new Request(Request.QUIT));
+        assertEquals(Request.QUIT, BinaryCodec.read(new ByteArrayInputStream(frame.array())).getOpcode());
+    }
+
+    @Test
+    public void testResponse() throws Exception {
+        ByteBuffer frame = BinaryCodec.encode(new Response(0, "card", "", "TODO"));
+
+        Response r = BinaryCodec.decodeResponse(frame);
+
+        assertEquals(0, r.getCode());
+        assertEquals(3, r.size());
+        assertEquals("", r.field(1));
+        assertEquals("TODO", r.field(2));
+    }
+
+    @Test
+    public void testJsonResponse() throws Exception {
+        List<String> cards = new ArrayList<>();
+
+        for (int i = 0; i < 50000; i++) {
+            cards.add("card" + i);
+        }
+
+        Response response = new Response(0, "\u00e8", JsonField.of(JsonField.STRING_LIST, cards)).withId(7);
+        ByteBuffer frame = BinaryCodec.encode(response);
+
+        Response r = BinaryCodec.decodeResponse(frame);
+
+        assertEquals(7, r.getId());
+        assertEquals(0, r.getCode());
+        assertEquals("\u00e8", r.field(0));
+        assertEquals(response.field(1), r.field(1));
+        assertFalse(frame.hasRemaining());
+    }
+
+    @Test
+    public void testLargeResponse() throws Exception {
+        List<String> history = new ArrayList<>();
+
+        for (int i = 0; i < 200000; i++) {
+            history.add("INPROGRESS");
+        }
+
+        // a response frame over the requests' limit
+        ByteBuffer frame = BinaryCodec.encode(new Response(0, JsonField.of(JsonField.ANY, history)));
+        assertTrue(frame.remaining() > BinaryCodec.maxFrameSize);
+
+        Response r = BinaryCodec.decodeResponse(frame);
+
+        assertEquals(0, r.getCode());
+        assertEquals(1, r.size());
+        assertFalse(frame.hasRemaining());
+
+        // the limit still applies to the requests
+        ByteBuffer request = BinaryCodec.encode(new Request(8, "project", "card", new String(new char[BinaryCodec.maxFrameSize])));
+        Assertions.assertThrows(ProtocolException.class, () -> BinaryCodec.decode(request));
+    }
+
+    @Test
+    public void testPartialFrame() throws ProtocolException {
+        ByteBuffer frame = BinaryCodec.encode(new Request(5, "project"));
+        ByteBuffer buf = ByteBuffer.allocate(64);
+
+        // testing decode of an incomplete frame, buffer has to be left untouched
+        buf.put(frame.array(), 0, frame.remaining() - 1).flip();
+        assertNull(BinaryCodec.decode(buf));
+        assertEquals(0, buf.position());
+
+        buf.compact();
+        buf.put(frame.array(), frame.remaining() - 1, 1).flip();
+        assertEquals("project", BinaryCodec.decode(buf).field(0));
+    }
+
+    @Test
+    public void testMalformedFrame() {
+        ByteBuffer buf = ByteBuffer.wrap(new byte[]{3, 2, 5, 1});
+
+        // fields count greater than frame's body
+        Assertions.assertThrows(ProtocolException.class, () -> BinaryCodec.decode(buf));
+    }
+}
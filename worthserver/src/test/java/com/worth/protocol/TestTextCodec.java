@@ -0,0 +1,64 @@
+package com.worth.protocol;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class TestTextCodec {
+
+    @Test
+    public void testDecode() {
+        Request r = TextCodec.decode("8%project%card%description");
+
+        assertEquals(8, r.getOpcode());
+        assertEquals(3, r.size());
+        assertEquals("description", r.field(2));
+        assertFalse(r.isTagged());
+
+        assertEquals(Request.QUIT, TextCodec.decode("quit").getOpcode());
+        assertEquals(Request.UNKNOWN, TextCodec.decode("abc%def").getOpcode());
+    }
+
+    @Test
+    public void testCorrelationId() {
+        Request r = TextCodec.decode("#42%7%project%card");
+
+        assertTrue(r.isTagged());
+        assertEquals(42, r.getId());
+        assertEquals(7, r.getOpcode());
+        assertEquals("card", r.field(1));
+
+        assertEquals("#42%0%card%desc%TODO", TextCodec.encode(new Response(0, "card", "desc", "TODO").withId(42)));
+        assertEquals("0%card", TextCodec.encode(new Response(0, "card")));
+
+        assertEquals(Request.UNKNOWN, TextCodec.decode("#x%7%project").getOpcode());
+    }
+
+    @Test
+    public void testWrite() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Response response = new Response(0, JsonField.of(JsonField.STRING_LIST, Arrays.asList("card1", "\u00e8")));
+
+        TextCodec.write(out, response.withId(3));
+
+        assertEquals("#3%0%[\"card1\",\"\u00e8\"]" + System.lineSeparator(), out.toString(StandardCharsets.UTF_8));
+        assertEquals("0%[\"card1\",\"\u00e8\"]", TextCodec.encode(response));
+    }
+
+    @Test
+    public void testEscapes() {
+        Response response = new Response(0, "50% done", "C:\\", "a\\b",
+                JsonField.of(JsonField.STRING_LIST, Arrays.asList("100%")));
+
+        assertEquals("#1%0%50\\% done%C:\\\\%a\\b%[\"100\\u0025\"]", TextCodec.encode(response.withId(1)));
+        assertEquals("50% done", TextCodec.decode("#1%8%project%card%50\\% done").field(2));
+
+        // the old clients' messages are never escaped
+        assertEquals("0%50% done%C:\\%a\\b%[\"100\\u0025\"]", TextCodec.encode(response));
+        assertEquals("C:\\\\", TextCodec.decode("8%project%card%C:\\\\").field(2));
+    }
+}
@@ -0,0 +1,115 @@
+package com.worth.protocol;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class TestTextParser {
+
+    @Test
+    public void testParse() {
+        TextParser parser = new TextParser();
+        byte[] line = "#3%8%project%card%50\\% done, C:\\\\%\r".getBytes(StandardCharsets.UTF_8);
+
+        parser.parse(line, 0, line.length);
+
+        assertEquals(3, parser.getId());
+        assertEquals(8, parser.getOpcode());
+        assertEquals(3, parser.size());
+        assertEquals("project", parser.field(0));
+        assertEquals("50% done, C:\\", parser.field(2));
+
+        // trailing empty fields are ignored
+        line = "5%project%%".getBytes(StandardCharsets.UTF_8);
+        parser.parse(line, 0, line.length);
+
+        assertEquals(1, parser.size());
+
+        // names are taken from the cache
+        String name = parser.field(0);
+        parser.parse(line, 0, line.length);
+
+        assertSame(name, parser.toRequest().field(0));
+
+        line = "#x%5%project".getBytes(StandardCharsets.UTF_8);
+        parser.parse(line, 0, line.length);
+
+        assertEquals(Request.UNKNOWN, parser.getOpcode());
+    }
+
+    @Test
+    public void testRead() throws Exception {
+        TextParser parser = new TextParser();
+        StringBuilder description = new StringBuilder();
+
+        for (int i = 0; i < 3000; i++) {
+            description.append('d');
+        }
+
+        byte[] lines = ("2\n8%project%card%" + description + "\nquit\n").getBytes(StandardCharsets.UTF_8);
+        ByteArrayInputStream in = new ByteArrayInputStream(lines);
+
+        assertTrue(parser.read(in));
+        assertEquals(2, parser.getOpcode());
+        assertTrue(parser.read(in));
+        assertEquals(description.toString(), parser.field(2));
+        assertTrue(parser.read(in));
+        assertEquals(Request.QUIT, parser.getOpcode());
+        assertFalse(parser.read(in));
+    }
+
+    @Test
+    public void testAllocations() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+        // the allocations are measured only by the JVMs counting them
+        Assumptions.assumeTrue(bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemoryEnabled());
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        long thread = Thread.currentThread().getId();
+
+        TextParser parser = new TextParser();
+        byte[] line = "#12%9%project%card%inprogress".getBytes(StandardCharsets.UTF_8);
+        int n = 100000;
+
+        // warming up
+        for (int i = 0; i < n; i++) {
+            parser.parse(line, 0, line.length);
+            parser.toRequest();
+        }
+
+        long before = threads.getThreadAllocatedBytes(thread);
+
+        for (int i = 0; i < n; i++) {
+            parser.parse(line, 0, line.length);
+        }
+
+        long parsed = threads.getThreadAllocatedBytes(thread);
+
+        for (int i = 0; i < n; i++) {
+            parser.parse(line, 0, line.length);
+            parser.toRequest();
+        }
+
+        long built = threads.getThreadAllocatedBytes(thread);
+
+        double parseBytes = (double) (parsed - before) / n;
+        double requestBytes = (double) (built - parsed) / n;
+
+        System.out.printf("[INFO]: Bytes allocated per request: %.1f parsing, %.1f building%n", parseBytes, requestBytes);
+
+        // parsing doesn't allocate, the bound leaves room for the JIT and the GC's own allocations
+        assertTrue(parseBytes < 16);
+
+        // only the request and its fields array, the fields come from the cache
+        assertTrue(requestBytes < 256);
+    }
+}